@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The function parameter of the benchmarks that measure each function registered in {@link FunctionFactory}. The
+ * names are listed once here, as JMH needs them in the annotation, and each one must have an expression in
+ * {@link FunctionExpressions}.
+ */
+@State(Scope.Thread)
+public abstract class AbstractFunctionBenchmark {
+    @Param({
+            "max", "min", "sum", "average", "median", "percentile", "round", "roundYear", "roundMonth", "roundDay",
+            "roundHour",
+            "roundMinute", "roundSecond", "ceiling", "ceilingYear", "ceilingMonth", "ceilingDay", "ceilingHour",
+            "ceilingMinute", "ceilingSecond", "parseDate", "formatDate", "extractAuthorityFromUri",
+            "extractFragmentFromUri", "extractHostFromUri", "extractPathFromUri", "extractPortFromUri",
+            "extractQueryFromUri", "extractSchemeFromUri", "extractSchemeSpecificPartFromUri",
+            "extractUserInfoFromUri", "floor", "floorYear", "floorMonth", "floorDay", "floorHour", "floorMinute",
+            "floorSecond", "replace", "concat", "link", "dashboard", "annotation", "data", "stepping",
+            "stringLength", "upperCase", "lowerCase", "encodeUrl", "decodeUrl", "indexOf", "lastIndexOf",
+            "substring", "substringBefore", "substringAfter", "decode", "include", "exclude", "hash", "joining",
+            "count", "countGroups", "countUnique", "countUniqueApprox", "power", "divide", "multiply", "modulus",
+            "add", "subtract",
+            "negate", "equals", "greaterThan", "lessThan", "greaterThanOrEqualTo", "lessThanOrEqualTo", "variance",
+            "stDev", "random", "any", "first", "last", "nth", "top", "bottom", "nthValue", "topValues", "bottomValues",
+            "currentUser", "param", "params",
+            "if", "match", "not", "true", "false", "null", "err", "toBoolean", "toDouble", "toInteger", "toLong",
+            "toString", "typeOf", "isBoolean", "isDouble", "isInteger", "isLong", "isString", "isNumber", "isValue",
+            "isNull", "isError"
+    })
+    String function;
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Builds synthetic rows for the benchmarks. Every row starts with the fields 'num', 'text', 'time' and 'url' so that
+ * benchmark expressions can reference them. Any further fields are filler that only serve to vary the row width.
+ */
+final class BenchmarkData {
+    static final String NUM = "num";
+    static final String TEXT = "text";
+    static final String TIME = "time";
+    static final String URL = "url";
+
+    private static final String[] FIELDS = {NUM, TEXT, TIME, URL};
+    // 2020-01-01T00:00:00.000Z
+    private static final long BASE_TIME = 1577836800000L;
+    private static final long SEED = 8682522807148012L;
+
+    private BenchmarkData() {
+        // Utility
+    }
+
+    static FieldIndexMap createFieldIndexMap(final int rowWidth) {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap();
+        for (int i = 0; i < Math.max(rowWidth, FIELDS.length); i++) {
+            fieldIndexMap.create(getFieldName(i), true);
+        }
+        return fieldIndexMap;
+    }
+
+    /**
+     * Create rows where each field holds one of roughly `cardinality` distinct values.
+     */
+    static Val[][] createRows(final int rowCount, final int rowWidth, final int cardinality) {
+        final Random random = new Random(SEED);
+        final int width = Math.max(rowWidth, FIELDS.length);
+        final Val[][] rows = new Val[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            final Val[] row = new Val[width];
+            for (int j = 0; j < width; j++) {
+                row[j] = createVal(j, random.nextInt(cardinality));
+            }
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Parse an expression in the same way that Stroom does, including setting the static mapped values used by the
+     * param(), params() and currentUser() functions.
+     */
+    static Expression parse(final ExpressionParser parser,
+                            final FieldIndexMap fieldIndexMap,
+                            final String expression) throws ParseException {
+        final Expression exp = parser.parse(fieldIndexMap, expression);
+        exp.setStaticMappedValues(Collections.singletonMap("key", "value"));
+        return exp;
+    }
+
+    private static String getFieldName(final int index) {
+        if (index < FIELDS.length) {
+            return FIELDS[index];
+        }
+        return "field" + index;
+    }
+
+    private static Val createVal(final int fieldIndex, final int n) {
+        switch (fieldIndex) {
+            case 0:
+                return ValDouble.create(n * 1.5D);
+            case 1:
+                return ValString.create("text-" + n);
+            case 2:
+                return ValLong.create(BASE_TIME + (n * 37_013L));
+            case 3:
+                return ValString.create("http://user@host" + (n % 64) + ".example.com:8080/path/to/" + n + "?q=" + n + "#frag" + n);
+            default:
+                if (fieldIndex % 2 == 0) {
+                    return ValInteger.create(n);
+                }
+                return ValString.create(String.valueOf(n));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of parsing an expression for each function registered in {@link FunctionFactory}, both directly
+ * and through an {@link ExpressionCache}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionParserBenchmark extends AbstractFunctionBenchmark {
+    private ExpressionParser parser;
+    private ExpressionCache cache;
+    private FieldIndexMap fieldIndexMap;
+    private String expression;
+
+    @Setup
+    public void setup() {
+        parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        cache = new ExpressionCache(parser);
+        fieldIndexMap = BenchmarkData.createFieldIndexMap(0);
+        expression = FunctionExpressions.get(function);
+    }
+
+    @Benchmark
+    public Expression parse() throws ParseException {
+        return parser.parse(fieldIndexMap, expression);
+    }
+
+    @Benchmark
+    public CompiledExpression parseCached() throws ParseException {
+        return cache.get(fieldIndexMap, expression, null);
+    }
+}
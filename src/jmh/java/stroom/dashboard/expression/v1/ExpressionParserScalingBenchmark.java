@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how parsing scales with the size of an expression for deeply nested function calls, functions with many
+ * parameters and long chains of operators.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionParserScalingBenchmark {
+    @Param({"nested", "wide", "operators"})
+    private String shape;
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private ExpressionParser parser;
+    private FieldIndexMap fieldIndexMap;
+    private String expression;
+
+    @Setup
+    public void setup() {
+        parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        fieldIndexMap = BenchmarkData.createFieldIndexMap(0);
+        expression = createExpression(shape, size);
+    }
+
+    @Benchmark
+    public Expression parse() throws ParseException {
+        return parser.parse(fieldIndexMap, expression);
+    }
+
+    static String createExpression(final String shape, final int size) {
+        final StringBuilder sb = new StringBuilder();
+        switch (shape) {
+            case "nested":
+                // e.g. if(${num}>0, decode(${text}, 'text-0', if(${num}>1, ... , 'b'), 0)
+                for (int i = 0; i < size; i++) {
+                    sb.append("if(${num}>").append(i).append(", decode(${text}, 'text-").append(i).append("', ");
+                }
+                sb.append("'z'");
+                for (int i = 0; i < size; i++) {
+                    sb.append(", 'b'), ").append(i).append(")");
+                }
+                break;
+            case "wide":
+                // e.g. concat(upperCase(${text}), '-', upperCase(${text}), '-', ...)
+                sb.append("concat(");
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) {
+                        sb.append(", '-', ");
+                    }
+                    sb.append("upperCase(${text})");
+                }
+                sb.append(")");
+                break;
+            case "operators":
+                // e.g. ${num}*2+${num}/3-${num}*2+${num}/3 ...
+                sb.append("${num}");
+                for (int i = 0; i < size; i++) {
+                    sb.append(i % 2 == 0 ? "*2+" : "/3-").append("${num}");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape '" + shape + "'");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A representative expression for every function registered in {@link FunctionFactory}, keyed by function name. The
+ * expressions reference the fields created by {@link BenchmarkData}.
+ */
+final class FunctionExpressions {
+    private static final Map<String, String> EXPRESSIONS = new LinkedHashMap<>();
+
+    static {
+        // Aggregate functions.
+        add("max", "max(${num})");
+        add("min", "min(${num})");
+        add("sum", "sum(${num})");
+        add("average", "average(${num})");
+        add("median", "median(${num})");
+        add("percentile", "percentile(${num}, 95)");
+
+        add("round", "round(${num}, 2)");
+        add("roundYear", "roundYear(${time})");
+        add("roundMonth", "roundMonth(${time})");
+        add("roundDay", "roundDay(${time})");
+        add("roundHour", "roundHour(${time})");
+        add("roundMinute", "roundMinute(${time})");
+        add("roundSecond", "roundSecond(${time})");
+
+        add("ceiling", "ceiling(${num}, 2)");
+        add("ceilingYear", "ceilingYear(${time})");
+        add("ceilingMonth", "ceilingMonth(${time})");
+        add("ceilingDay", "ceilingDay(${time})");
+        add("ceilingHour", "ceilingHour(${time})");
+        add("ceilingMinute", "ceilingMinute(${time})");
+        add("ceilingSecond", "ceilingSecond(${time})");
+
+        add("parseDate", "parseDate(formatDate(${time}))");
+        add("formatDate", "formatDate(${time}, 'yyyy-MM-dd HH:mm', '+0100')");
+
+        add("extractAuthorityFromUri", "extractAuthorityFromUri(${url})");
+        add("extractFragmentFromUri", "extractFragmentFromUri(${url})");
+        add("extractHostFromUri", "extractHostFromUri(${url})");
+        add("extractPathFromUri", "extractPathFromUri(${url})");
+        add("extractPortFromUri", "extractPortFromUri(${url})");
+        add("extractQueryFromUri", "extractQueryFromUri(${url})");
+        add("extractSchemeFromUri", "extractSchemeFromUri(${url})");
+        add("extractSchemeSpecificPartFromUri", "extractSchemeSpecificPartFromUri(${url})");
+        add("extractUserInfoFromUri", "extractUserInfoFromUri(${url})");
+
+        add("floor", "floor(${num}, 2)");
+        add("floorYear", "floorYear(${time})");
+        add("floorMonth", "floorMonth(${time})");
+        add("floorDay", "floorDay(${time})");
+        add("floorHour", "floorHour(${time})");
+        add("floorMinute", "floorMinute(${time})");
+        add("floorSecond", "floorSecond(${time})");
+
+        add("replace", "replace(${text}, 'text-([0-9]+)', 'value $1')");
+        add("concat", "concat(${text}, ' - ', ${num})");
+        add("link", "link(${text}, ${url}, 'browser')");
+        add("dashboard", "dashboard(${text}, 'someuuid', concat('param=', ${num}))");
+        add("annotation", "annotation(${text}, ${num})");
+        add("data", "data(${text}, ${num}, 1, 1)");
+        add("stepping", "stepping(${text}, ${num})");
+
+        // String functions.
+        add("stringLength", "stringLength(${text})");
+        add("upperCase", "upperCase(${text})");
+        add("lowerCase", "lowerCase(${text})");
+        add("encodeUrl", "encodeUrl(${url})");
+        add("decodeUrl", "decodeUrl(${url})");
+        add("indexOf", "indexOf(${text}, '-')");
+        add("lastIndexOf", "lastIndexOf(${url}, '/')");
+        add("substring", "substring(${text}, 1, 4)");
+        add("substringBefore", "substringBefore(${text}, '-')");
+        add("substringAfter", "substringAfter(${text}, '-')");
+        add("decode", "decode(${text}, 'text-1.*', 'one', 'text-2.*', 'two', 'other')");
+        add("include", "include(${text}, 'text-1.*', 'text-2.*')");
+        add("exclude", "exclude(${text}, 'text-1.*', 'text-2.*')");
+        add("hash", "hash(${text})");
+
+        // Aggregate string functions.
+        add("joining", "joining(${text}, ',', 10)");
+
+        add("count", "count()");
+        add("countGroups", "countGroups()");
+        add("countUnique", "countUnique(${text})");
+        add("countUniqueApprox", "countUniqueApprox(${text})");
+
+        add("power", "${num}^2");
+        add("divide", "${num}/3");
+        add("multiply", "${num}*3");
+        add("modulus", "${num}%3");
+        add("add", "${num}+3");
+        add("subtract", "${num}-3");
+        add("negate", "negate(${num})");
+        add("equals", "${num}=3");
+        add("greaterThan", "${num}>3");
+        add("lessThan", "${num}<3");
+        add("greaterThanOrEqualTo", "${num}>=3");
+        add("lessThanOrEqualTo", "${num}<=3");
+
+        add("variance", "variance(${num})");
+        add("stDev", "stDev(${num})");
+
+        add("random", "random()");
+
+        // Child value selectors.
+        add("any", "any(${text})");
+        add("first", "first(${text})");
+        add("last", "last(${text})");
+        add("nth", "nth(${text}, 2)");
+        add("top", "top(${text}, ',', 3)");
+        add("bottom", "bottom(${text}, ',', 3)");
+        add("nthValue", "nthValue(${text}, 2)");
+        add("topValues", "topValues(${text}, ',', 3)");
+        add("bottomValues", "bottomValues(${text}, ',', 3)");
+
+        // Echo statically mapped values
+        add("currentUser", "currentUser()");
+        add("param", "param('key')");
+        add("params", "params()");
+
+        // Logic
+        add("if", "if(${num}>10, ${text}, 'small')");
+        add("match", "match(${text}, 'text-1.*')");
+        add("not", "not(${num}>10)");
+
+        // Static values
+        add("true", "true()");
+        add("false", "false()");
+        add("null", "null()");
+        add("err", "err()");
+
+        // Casting
+        add("toBoolean", "toBoolean(${num})");
+        add("toDouble", "toDouble(${text})");
+        add("toInteger", "toInteger(${num})");
+        add("toLong", "toLong(${num})");
+        add("toString", "toString(${num})");
+
+        // Type Checking
+        add("typeOf", "typeOf(${num})");
+        add("isBoolean", "isBoolean(${num})");
+        add("isDouble", "isDouble(${num})");
+        add("isInteger", "isInteger(${num})");
+        add("isLong", "isLong(${num})");
+        add("isString", "isString(${num})");
+        add("isNumber", "isNumber(${num})");
+        add("isValue", "isValue(${num})");
+        add("isNull", "isNull(${num})");
+        add("isError", "isError(${num})");
+    }
+
+    private FunctionExpressions() {
+        // Utility
+    }
+
+    private static void add(final String functionName, final String expression) {
+        EXPRESSIONS.put(functionName, expression);
+    }
+
+    static String get(final String functionName) {
+        final String expression = EXPRESSIONS.get(functionName);
+        if (expression == null) {
+            throw new IllegalArgumentException("No benchmark expression for function '" + functionName + "'");
+        }
+        return expression;
+    }
+
+    static Map<String, String> getAll() {
+        return EXPRESSIONS;
+    }
+}
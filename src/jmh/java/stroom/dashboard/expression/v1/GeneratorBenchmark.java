@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per row cost of {@link Generator#set(Val[])} and {@link Generator#eval()} for each function registered
+ * in {@link FunctionFactory}. Scores are reported per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark extends AbstractFunctionBenchmark {
+    static final int ROW_COUNT = 10_000;
+
+    @Param({"4", "32"})
+    private int rowWidth;
+
+    @Param({"10", "10000"})
+    private int cardinality;
+
+    private Expression expression;
+    private Val[][] rows;
+    private ValBlock block;
+
+    @Setup
+    public void setup() throws ParseException {
+        final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        final FieldIndexMap fieldIndexMap = BenchmarkData.createFieldIndexMap(rowWidth);
+        expression = BenchmarkData.parse(parser, fieldIndexMap, FunctionExpressions.get(function));
+        rows = BenchmarkData.createRows(ROW_COUNT, rowWidth, cardinality);
+
+        final Val[][] columns = new Val[rows[0].length][ROW_COUNT];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            for (int j = 0; j < columns.length; j++) {
+                columns[j][i] = rows[i][j];
+            }
+        }
+        block = new ValBlock(columns, ROW_COUNT);
+    }
+
+    /**
+     * Feed every row into a single generator and evaluate once at the end, i.e. the grouped case where all rows belong
+     * to the same group.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public Val set() {
+        final Generator generator = expression.createGenerator();
+        for (final Val[] row : rows) {
+            generator.set(row);
+        }
+        return generator.eval();
+    }
+
+    /**
+     * The same as {@link #set()} but with every row supplied as a single block.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public Val setBatch() {
+        final Generator generator = expression.createGenerator();
+        generator.setBatch(block);
+        return generator.eval();
+    }
+
+    /**
+     * Create a generator per row and evaluate it immediately, i.e. the ungrouped case where every row is output.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public void setAndEval(final Blackhole blackhole) {
+        for (final Val[] row : rows) {
+            final Generator generator = expression.createGenerator();
+            generator.set(row);
+            blackhole.consume(generator.eval());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures grouping rows with {@link GroupingTable} against the usual approach of looking up the generators of
+ * each group in a HashMap keyed by a list of the key values. Scores are reported per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GroupingBenchmark {
+    static final int ROW_COUNT = 100_000;
+
+    @Param({"10", "10000", "100000"})
+    private int cardinality;
+
+    private FieldIndexMap fieldIndexMap;
+    private ExpressionSet keyExpressions;
+    private ExpressionSet valueExpressions;
+    private Val[][] rows;
+
+    @Setup
+    public void setup() throws ParseException {
+        final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        fieldIndexMap = new FieldIndexMap(true);
+        keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${host}", "${port}");
+        valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${bytes})", "max(${bytes})");
+
+        final Random random = new Random(1);
+        rows = new Val[ROW_COUNT][];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            final int group = random.nextInt(cardinality);
+            final Val[] row = new Val[fieldIndexMap.size()];
+            row[fieldIndexMap.get("host")] = ValString.create("host" + (group / 10) + ".example.com");
+            row[fieldIndexMap.get("port")] = ValInteger.create(8000 + group % 10);
+            row[fieldIndexMap.get("bytes")] = ValLong.create(random.nextInt(100_000));
+            rows[i] = row;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int groupingTable() {
+        final GroupingTable table = new GroupingTable(keyExpressions, valueExpressions);
+        for (final Val[] row : rows) {
+            table.add(row);
+        }
+        return table.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int hashMap() {
+        final GeneratorSet keyGenerators = keyExpressions.createGenerators();
+        final Map<List<Val>, GeneratorSet> groups = new HashMap<>();
+        for (final Val[] row : rows) {
+            keyGenerators.set(row);
+            final Val[] key = new Val[keyGenerators.size()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = keyGenerators.get(i).eval();
+            }
+            groups.computeIfAbsent(Arrays.asList(key), k -> valueExpressions.createGenerators()).set(row);
+        }
+        return groups.size();
+    }
+}
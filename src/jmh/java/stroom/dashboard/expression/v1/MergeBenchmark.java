@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link Generator#merge(Generator)} for each function registered in {@link FunctionFactory}, as
+ * happens when partial results for the same group are combined. Scores are reported per merged generator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MergeBenchmark extends AbstractFunctionBenchmark {
+    static final int PARTIAL_COUNT = 100;
+
+    @Param({"1", "100"})
+    private int rowsPerPartial;
+
+    @Param({"10", "10000"})
+    private int cardinality;
+
+    private Expression expression;
+    private Generator[] partials;
+
+    @Setup
+    public void setup() throws ParseException {
+        final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        final FieldIndexMap fieldIndexMap = BenchmarkData.createFieldIndexMap(0);
+        expression = BenchmarkData.parse(parser, fieldIndexMap, FunctionExpressions.get(function));
+
+        final Val[][] rows = BenchmarkData.createRows(PARTIAL_COUNT * rowsPerPartial, 0, cardinality);
+        partials = new Generator[PARTIAL_COUNT];
+        for (int i = 0; i < PARTIAL_COUNT; i++) {
+            final Generator generator = expression.createGenerator();
+            for (int j = 0; j < rowsPerPartial; j++) {
+                generator.set(rows[(i * rowsPerPartial) + j]);
+            }
+            partials[i] = generator;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PARTIAL_COUNT)
+    public Val merge() {
+        final Generator generator = expression.createGenerator();
+        for (final Generator partial : partials) {
+            generator.merge(partial);
+        }
+        return generator.eval();
+    }
+}
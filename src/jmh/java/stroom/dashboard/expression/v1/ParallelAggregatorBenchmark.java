@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of {@link ParallelAggregator} scales with the number of threads, against grouping
+ * the same rows with a single {@link GroupingTable} on the benchmark thread. Scores are reported per row so ideal
+ * scaling halves the score each time the number of threads doubles, up to the number of cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelAggregatorBenchmark {
+    static final int ROW_COUNT = 1_000_000;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    private int threads;
+
+    @Param({"100", "100000"})
+    private int cardinality;
+
+    private ExpressionSet keyExpressions;
+    private ExpressionSet valueExpressions;
+    private Val[][] rows;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() throws ParseException {
+        final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${host}");
+        valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${bytes})", "max(${bytes})");
+
+        final Random random = new Random(1);
+        rows = new Val[ROW_COUNT][];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            final Val[] row = new Val[fieldIndexMap.size()];
+            row[fieldIndexMap.get("host")] = ValString.create("host" + random.nextInt(cardinality) + ".example.com");
+            row[fieldIndexMap.get("bytes")] = ValLong.create(random.nextInt(100_000));
+            rows[i] = row;
+        }
+
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int parallel() throws InterruptedException {
+        final ParallelAggregator aggregator = new ParallelAggregator(keyExpressions, valueExpressions, executor, 4096,
+                threads * 2);
+        for (final Val[] row : rows) {
+            aggregator.add(row);
+        }
+        return aggregator.complete().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int sequential() {
+        final GroupingTable table = new GroupingTable(keyExpressions, valueExpressions);
+        for (final Val[] row : rows) {
+            table.add(row);
+        }
+        return table.size();
+    }
+}
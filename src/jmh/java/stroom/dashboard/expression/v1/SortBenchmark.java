@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sorting a million groups by the value of a generator with {@link Generator#compareTo(Generator)} against
+ * sorting on a {@link SortKey} created once for each generator. Values are new strings for each sort, as they are
+ * when a search returns, so that numbers parsed by earlier sorts are not reused. Scores are reported per sort.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SortBenchmark {
+    static final int GROUP_COUNT = 1_000_000;
+
+    @Param({"integer", "decimal", "text"})
+    private String kind;
+
+    private String[] strings;
+    private Generator[] generators;
+
+    @Setup
+    public void setup() throws ParseException {
+        final Random random = new Random(1);
+        strings = new String[GROUP_COUNT];
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            switch (kind) {
+                case "integer":
+                    strings[i] = Integer.toString(random.nextInt());
+                    break;
+                case "decimal":
+                    strings[i] = Double.toString(random.nextDouble() * 1000);
+                    break;
+                default:
+                    strings[i] = "Host" + random.nextInt(GROUP_COUNT) + ".example.com";
+            }
+        }
+
+        final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        final Expression expression = parser.parse(new FieldIndexMap(true), "${val}");
+        generators = new Generator[GROUP_COUNT];
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            generators[i] = expression.createGenerator();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setValues() {
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            generators[i].set(new Val[]{ValString.create(strings[i])});
+        }
+    }
+
+    @Benchmark
+    public Generator[] sortGenerators() {
+        final Generator[] sorted = generators.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public Generator[] sortKeys() {
+        final Generator[] sorted = generators.clone();
+        SortKey.sort(sorted);
+        return sorted;
+    }
+}
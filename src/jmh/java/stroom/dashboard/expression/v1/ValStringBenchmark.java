@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stroom.dashboard.expression.v1;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting string values to numbers with {@link ValString#toLong()} and {@link ValString#toDouble()}
+ * against the previous approach of trying to parse each string as a date and then as a number and catching the
+ * exceptions. Scores are reported per value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValStringBenchmark {
+    static final int VALUE_COUNT = 1000;
+
+    @Param({"date", "integer", "decimal", "text"})
+    private String kind;
+
+    private String[] strings;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1);
+        strings = new String[VALUE_COUNT];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            switch (kind) {
+                case "date":
+                    strings[i] = DateUtil.createNormalDateTimeString((long) (random.nextDouble() * 2_000_000_000_000L));
+                    break;
+                case "integer":
+                    strings[i] = Integer.toString(random.nextInt());
+                    break;
+                case "decimal":
+                    strings[i] = Double.toString(random.nextDouble() * 1000);
+                    break;
+                default:
+                    strings[i] = "host" + random.nextInt(1000) + ".example.com";
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public double toDouble() {
+        double total = 0;
+        for (final String string : strings) {
+            final Double d = new ValString(string).toDouble();
+            if (d != null) {
+                total += d;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public double toDoubleWithExceptions() {
+        double total = 0;
+        for (final String string : strings) {
+            Double d;
+            try {
+                if (!DateUtil.looksLikeDate(string)) {
+                    throw new IllegalArgumentException("Unable to parse date: \"" + string + '"');
+                }
+                d = (double) DateUtil.parse(string, DateUtil.DEFAULT_FORMATTER, ZoneOffset.UTC);
+            } catch (final RuntimeException e) {
+                try {
+                    d = new BigDecimal(string).doubleValue();
+                } catch (final RuntimeException e2) {
+                    d = null;
+                }
+            }
+            if (d != null) {
+                total += d;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public long toLong() {
+        long total = 0;
+        for (final String string : strings) {
+            final Long l = new ValString(string).toLong();
+            if (l != null) {
+                total += l;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public long toLongWithExceptions() {
+        long total = 0;
+        for (final String string : strings) {
+            Long l;
+            try {
+                if (!DateUtil.looksLikeDate(string)) {
+                    throw new IllegalArgumentException("Unable to parse date: \"" + string + '"');
+                }
+                l = DateUtil.parse(string, DateUtil.DEFAULT_FORMATTER, ZoneOffset.UTC);
+            } catch (final RuntimeException e) {
+                try {
+                    l = Long.valueOf(string);
+                } catch (final RuntimeException e2) {
+                    l = null;
+                }
+            }
+            if (l != null) {
+                total += l;
+            }
+        }
+        return total;
+    }
+}
@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 abstract class AbstractAggregateFunction extends AbstractManyChildFunction implements AggregateFunction {
     private final Calculator calculator;
 
@@ -51,7 +53,12 @@ abstract class AbstractAggregateFunction extends AbstractManyChildFunction imple
 
         private final Calculator calculator;
 
+        // Once the current value is a number it is also held as a primitive so that subsequent numbers can be
+        // combined with it without creating a new value for each one. The current value is null when only the
+        // primitive is up to date.
         private Val current = ValNull.INSTANCE;
+        private double primitive;
+        private boolean hasPrimitive;
 
         AggregateGen(final Generator childGenerator, final Calculator calculator) {
             super(childGenerator);
@@ -61,20 +68,97 @@ abstract class AbstractAggregateFunction extends AbstractManyChildFunction imple
         @Override
         public void set(final Val[] values) {
             childGenerator.set(values);
-            current = calculator.calc(current, childGenerator.eval());
+            if (hasPrimitive) {
+                final double val = childGenerator.evalDouble();
+                if (!Double.isNaN(val)) {
+                    primitive = calculator.op(primitive, val);
+                    current = null;
+                    return;
+                }
+            }
+            setCurrent(calculator.calc(eval(), childGenerator.eval()));
+        }
+
+        @Override
+        public void setBatch(final ValBlock block) {
+            final int size = block.size();
+            final double[] doubles = block.borrowDoubles();
+            final Val[] vals = block.borrowVals();
+            childGenerator.evalBatch(block, doubles, vals);
+
+            int i = 0;
+            while (i < size) {
+                if (hasPrimitive) {
+                    // Fold each run of numbers into a local so that the loop only touches primitives.
+                    final int start = i;
+                    double total = primitive;
+                    while (i < size && !Double.isNaN(doubles[i])) {
+                        total = calculator.op(total, doubles[i]);
+                        i++;
+                    }
+                    if (i > start) {
+                        primitive = total;
+                        current = null;
+                    }
+                }
+                if (i < size) {
+                    setCurrent(calculator.calc(eval(), ValBlock.val(doubles, vals, i)));
+                    i++;
+                }
+            }
+
+            block.release(doubles, vals);
         }
 
         @Override
         public Val eval() {
+            if (current == null) {
+                current = ValDouble.create(primitive);
+            }
             return current;
         }
 
+        @Override
+        public double evalDouble() {
+            if (current == null) {
+                return primitive;
+            }
+            return super.evalDouble();
+        }
+
         @Override
         public void merge(final Generator generator) {
             final AggregateGen aggregateGen = (AggregateGen) generator;
-            current = calculator.calc(current, aggregateGen.current);
+            setCurrent(calculator.calc(eval(), aggregateGen.eval()));
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeVal(eval());
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            setCurrent(input.readVal());
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            // The current value may be a string, e.g. for the max of a text field.
+            return super.estimatedSizeInBytes() + SizeEstimates.val(current);
+        }
+
+        private void setCurrent(final Val current) {
+            this.current = current;
+            final Double val = current.toDouble();
+            hasPrimitive = val != null;
+            if (hasPrimitive) {
+                primitive = val;
+            }
+        }
     }
 
     private static class Gen extends AbstractManyChildGenerator {
@@ -96,6 +180,12 @@ abstract class AbstractAggregateFunction extends AbstractManyChildFunction imple
 
         @Override
         public Val eval() {
+            // Avoid creating intermediate values when all of the children produce numbers.
+            final double result = calculator.calc(childGenerators);
+            if (!Double.isNaN(result)) {
+                return ValDouble.create(result);
+            }
+
             Val value = ValNull.INSTANCE;
             for (final Generator gen : childGenerators) {
                 final Val val = gen.eval();
@@ -106,5 +196,10 @@ abstract class AbstractAggregateFunction extends AbstractManyChildFunction imple
             }
             return value;
         }
+
+        @Override
+        public double evalDouble() {
+            return calculator.calc(childGenerators);
+        }
     }
 }
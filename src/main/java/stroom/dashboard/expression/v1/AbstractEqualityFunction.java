@@ -77,6 +77,13 @@ abstract class AbstractEqualityFunction extends AbstractManyChildFunction {
             }
         }
 
+        @Override
+        public void setBatch(final ValBlock block) {
+            for (final Generator generator : childGenerators) {
+                generator.setBatch(block);
+            }
+        }
+
         @Override
         public Val eval() {
             final Val[] values = new Val[childGenerators.length];
@@ -98,5 +105,39 @@ abstract class AbstractEqualityFunction extends AbstractManyChildFunction {
 
             return evaluator.evaluate(values[0], values[1]);
         }
+
+        @Override
+        public void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+            final int size = block.size();
+            final double[] doubles1 = block.borrowDoubles();
+            final Val[] vals1 = block.borrowVals();
+            final double[] doubles2 = block.borrowDoubles();
+            final Val[] vals2 = block.borrowVals();
+            childGenerators[0].evalBatch(block, doubles1, vals1);
+            childGenerators[1].evalBatch(block, doubles2, vals2);
+
+            for (int i = 0; i < size; i++) {
+                final Val val1 = ValBlock.val(doubles1, vals1, i);
+                final Val val2 = ValBlock.val(doubles2, vals2, i);
+                final Val result;
+                if (!val1.type().isValue()) {
+                    result = ValErr.wrap(val1, MISSING_VALUE);
+                } else if (!val2.type().isValue()) {
+                    result = ValErr.wrap(val2, MISSING_VALUE);
+                } else {
+                    result = evaluator.evaluate(val1, val2);
+                }
+
+                vals[i] = result;
+                if (result instanceof ValNumber) {
+                    doubles[i] = ((ValNumber) result).doubleValue();
+                } else {
+                    doubles[i] = Double.NaN;
+                }
+            }
+
+            block.release(doubles1, vals1);
+            block.release(doubles2, vals2);
+        }
     }
 }
\ No newline at end of file
@@ -94,4 +94,42 @@ abstract class AbstractFunction implements Function, Appendable {
     public boolean isAggregate() {
         return false;
     }
+
+    /**
+     * Can this function be evaluated when the expression is parsed if all of its params are constant? This is not
+     * the case for functions that read row data or static mapped values or that produce a different value each
+     * time they are evaluated.
+     *
+     * @return True if the function produces the same value whenever it is given the same params.
+     */
+    boolean isFoldable() {
+        return true;
+    }
+
+    /**
+     * @return True if this function always produces the same value when given the same params and row, i.e. it is
+     * not random.
+     */
+    boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * @return True if this function will produce the same value for every row so can be evaluated once.
+     */
+    boolean isConstant() {
+        if (!isFoldable() || hasAggregate()) {
+            return false;
+        }
+        if (params != null) {
+            for (final Param param : params) {
+                if (!(param instanceof Val ||
+                        param instanceof StaticValueFunction ||
+                        param instanceof AbstractStaticFunction)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 }
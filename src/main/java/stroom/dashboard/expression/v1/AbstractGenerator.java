@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 abstract class AbstractGenerator implements Generator, Serializable, Comparable<Generator> {
@@ -29,4 +30,11 @@ abstract class AbstractGenerator implements Generator, Serializable, Comparable<
         final Val o2 = gen.eval();
         return COMPARATOR.compare(o1, o2);
     }
+
+    // Every generator in this package must be able to write and read its state.
+    @Override
+    public abstract void write(GeneratorOutput output) throws IOException;
+
+    @Override
+    public abstract void read(GeneratorInput input) throws IOException;
 }
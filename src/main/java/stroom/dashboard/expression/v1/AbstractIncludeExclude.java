@@ -25,6 +25,7 @@ abstract class AbstractIncludeExclude extends AbstractManyChildFunction implemen
 
     private Generator gen;
     private boolean simple;
+    private Pattern[] patterns;
 
     AbstractIncludeExclude(final String name) {
         super(name, 2, Integer.MAX_VALUE);
@@ -71,6 +72,7 @@ abstract class AbstractIncludeExclude extends AbstractManyChildFunction implemen
             }
 
         } else {
+            patterns = new Pattern[params.length];
             for (int i = 1; i < params.length; i++) {
                 if (params[i] instanceof Val) {
                     // Test regex is valid.
@@ -78,7 +80,7 @@ abstract class AbstractIncludeExclude extends AbstractManyChildFunction implemen
                     if (regex.length() == 0) {
                         throw new ParseException("An empty regex has been defined for argument of '" + name + "' function", 0);
                     }
-                    PatternCache.get(regex);
+                    patterns[i] = PatternCache.get(regex);
                 }
             }
         }
@@ -102,11 +104,22 @@ abstract class AbstractIncludeExclude extends AbstractManyChildFunction implemen
 
     abstract boolean inverse();
 
+    RegexMatcher[] createRegexMatchers() {
+        final RegexMatcher[] regexMatchers = new RegexMatcher[patterns.length];
+        for (int i = 1; i < patterns.length; i++) {
+            regexMatchers[i] = new RegexMatcher(patterns[i]);
+        }
+        return regexMatchers;
+    }
+
     abstract static class AbstractGen extends AbstractManyChildGenerator {
         private static final long serialVersionUID = 8153777070911899616L;
 
-        AbstractGen(final Generator[] childGenerators) {
+        private final RegexMatcher[] regexMatchers;
+
+        AbstractGen(final Generator[] childGenerators, final RegexMatcher[] regexMatchers) {
             super(childGenerators);
+            this.regexMatchers = regexMatchers;
         }
 
         @Override
@@ -128,13 +141,15 @@ abstract class AbstractIncludeExclude extends AbstractManyChildFunction implemen
 
                 boolean found = false;
                 for (int i = 1; i < childGenerators.length && !found; i++) {
-                    final Val v = childGenerators[i].eval();
-                    if (v.type().isValue()) {
-                        final String regex = v.toString();
-                        if (regex.length() > 0) {
-                            final Pattern pattern = PatternCache.get(regex);
-                            if (pattern.matcher(value).matches()) {
-                                found = true;
+                    final RegexMatcher regexMatcher = regexMatchers[i];
+                    if (regexMatcher.isStatic()) {
+                        found = regexMatcher.matcher(value).matches();
+                    } else {
+                        final Val v = childGenerators[i].eval();
+                        if (v.type().isValue()) {
+                            final String regex = v.toString();
+                            if (regex.length() > 0) {
+                                found = regexMatcher.matcher(regex, value).matches();
                             }
                         }
                     }
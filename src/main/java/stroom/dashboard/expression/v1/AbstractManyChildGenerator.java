@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 abstract class AbstractManyChildGenerator extends AbstractGenerator {
     private static final long serialVersionUID = 513621715143449935L;
 
@@ -45,6 +47,29 @@ abstract class AbstractManyChildGenerator extends AbstractGenerator {
         addChildren((AbstractManyChildGenerator) generator);
     }
 
+    @Override
+    public void write(final GeneratorOutput output) throws IOException {
+        for (final Generator gen : childGenerators) {
+            gen.write(output);
+        }
+    }
+
+    @Override
+    public void read(final GeneratorInput input) throws IOException {
+        for (final Generator gen : childGenerators) {
+            gen.read(input);
+        }
+    }
+
+    @Override
+    public long estimatedSizeInBytes() {
+        long size = SizeEstimates.GENERATOR + SizeEstimates.array(childGenerators.length, SizeEstimates.REFERENCE);
+        for (final Generator gen : childGenerators) {
+            size += gen.estimatedSizeInBytes();
+        }
+        return size;
+    }
+
     private void addChildren(final AbstractManyChildGenerator generator) {
         for (int i = 0; i < childGenerators.length; i++) {
             childGenerators[i].merge(generator.childGenerators[i]);
@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 abstract class AbstractNoChildGenerator extends AbstractGenerator {
     private static final long serialVersionUID = 513621715143449935L;
 
@@ -36,4 +38,12 @@ abstract class AbstractNoChildGenerator extends AbstractGenerator {
     @Override
     public void merge(final Generator generator) {
     }
+
+    @Override
+    public void write(final GeneratorOutput output) throws IOException {
+    }
+
+    @Override
+    public void read(final GeneratorInput input) throws IOException {
+    }
 }
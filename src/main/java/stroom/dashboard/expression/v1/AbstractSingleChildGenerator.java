@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 abstract class AbstractSingleChildGenerator extends AbstractGenerator {
     private static final long serialVersionUID = 513621715143449935L;
 
@@ -41,6 +43,21 @@ abstract class AbstractSingleChildGenerator extends AbstractGenerator {
         addChildren((AbstractSingleChildGenerator) generator);
     }
 
+    @Override
+    public void write(final GeneratorOutput output) throws IOException {
+        childGenerator.write(output);
+    }
+
+    @Override
+    public void read(final GeneratorInput input) throws IOException {
+        childGenerator.read(input);
+    }
+
+    @Override
+    public long estimatedSizeInBytes() {
+        return SizeEstimates.GENERATOR + childGenerator.estimatedSizeInBytes();
+    }
+
     private void addChildren(final AbstractSingleChildGenerator generator) {
         childGenerator.merge(generator.childGenerator);
     }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * Base class for functions that join the first or last few values of a group in value order. Unlike the top()
+ * and bottom() selectors, which choose from child groups sorted by the caller, only the values that could be
+ * selected are kept so memory does not grow with the size of the group.
+ */
+abstract class AbstractValuesFunction extends AbstractFunction {
+    private final boolean largest;
+
+    private String delimiter;
+    private int limit;
+
+    private Function function;
+
+    AbstractValuesFunction(final String name, final boolean largest) {
+        super(name, 3, 3);
+        this.largest = largest;
+    }
+
+    @Override
+    public void setParams(final Param[] params) throws ParseException {
+        super.setParams(params);
+
+        delimiter = ParamParseUtil.parseStringParam(params, 1, name);
+        limit = ParamParseUtil.parseIntParam(params, 2, name, true);
+
+        final Param param = params[0];
+        if (param instanceof Function) {
+            function = (Function) param;
+
+            if (function.hasAggregate()) {
+                throw new ParseException(name + " cannot be applied to aggregating function", 0);
+            }
+
+        } else {
+            function = new StaticValueFunction((Val) param);
+        }
+    }
+
+    @Override
+    public Generator createGenerator() {
+        final Generator childGenerator = function.createGenerator();
+        return new Gen(childGenerator, delimiter, new ValHeap(limit, largest));
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    @Override
+    public boolean hasAggregate() {
+        return isAggregate();
+    }
+
+    private static class Gen extends AbstractSingleChildGenerator {
+        private static final long serialVersionUID = -3526470512870524339L;
+
+        private final String delimiter;
+        private final ValHeap valHeap;
+
+        Gen(final Generator childGenerator, final String delimiter, final ValHeap valHeap) {
+            super(childGenerator);
+            this.delimiter = delimiter;
+            this.valHeap = valHeap;
+        }
+
+        @Override
+        public void set(final Val[] values) {
+            childGenerator.set(values);
+            final Val val = childGenerator.eval();
+            if (val.type().isValue()) {
+                valHeap.add(val);
+            }
+        }
+
+        @Override
+        public Val eval() {
+            final StringBuilder sb = new StringBuilder();
+            for (final Val val : valHeap.toSortedArray()) {
+                if (sb.length() > 0) {
+                    sb.append(delimiter);
+                }
+                sb.append(val.toString());
+            }
+            return ValString.create(sb.toString());
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            final Gen gen = (Gen) generator;
+            valHeap.merge(gen.valHeap);
+            super.merge(generator);
+        }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            valHeap.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            valHeap.read(input);
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + valHeap.estimatedSizeInBytes();
+        }
+    }
+}
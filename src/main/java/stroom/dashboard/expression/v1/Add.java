@@ -42,38 +42,32 @@ class Add extends NumericFunction {
         protected double op(final double cur, final double val) {
             return cur + val;
         }
+
+        @Override
+        void calc(final double[] current, final double[] values, final int size) {
+            // NaN propagates through the operation so there is no need to test for it.
+            for (int i = 0; i < size; i++) {
+                current[i] += values[i];
+            }
+        }
     }
 
-    private static class Gen extends AbstractManyChildGenerator {
+    private static class Gen extends NumericFunction.Gen {
         private static final long serialVersionUID = 217968020285584214L;
 
-        private final Calculator calculator;
-
         Gen(final Generator[] childGenerators, final Calculator calculator) {
-            super(childGenerators);
-            this.calculator = calculator;
+            super(childGenerators, calculator);
         }
 
         @Override
-        public void set(final Val[] values) {
-            for (final Generator generator : childGenerators) {
-                generator.set(values);
-            }
-        }
-
-        @Override
-        public Val eval() {
+        Val calc(final Val[] vals) {
             boolean concat = false;
-            final Val[] vals = new Val[childGenerators.length];
-            for (int i = 0; i < vals.length; i++) {
-                final Val val = childGenerators[i].eval();
+            for (final Val val : vals) {
                 if (val.type().isError()) {
                     return val;
                 } else if (val instanceof ValString) {
                     concat = true;
                 }
-
-                vals[i] = val;
             }
 
             // If any of the input values are strings then concatenate them all.
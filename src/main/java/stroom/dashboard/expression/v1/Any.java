@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 class Any extends AbstractSelectorFunction implements Serializable {
@@ -56,5 +57,22 @@ class Any extends AbstractSelectorFunction implements Serializable {
 
             return this.val;
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeVal(val);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            val = input.readVal();
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + SizeEstimates.val(val);
+        }
     }
 }
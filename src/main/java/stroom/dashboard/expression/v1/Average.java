@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 class Average extends AbstractManyChildFunction implements AggregateFunction {
     static final String NAME = "average";
     static final String ALIAS = "mean";
@@ -52,7 +54,12 @@ class Average extends AbstractManyChildFunction implements AggregateFunction {
 
         private final Calculator calculator;
 
+        // Once the current total is a number it is also held as a primitive so that subsequent numbers can be
+        // added to it without creating a new value for each one. The current total is null when only the
+        // primitive is up to date.
         private Val current = ValNull.INSTANCE;
+        private double primitive;
+        private boolean hasPrimitive;
         private int count;
 
         AggregateGen(final Generator childGenerator, final Calculator calculator) {
@@ -63,12 +70,55 @@ class Average extends AbstractManyChildFunction implements AggregateFunction {
         @Override
         public void set(final Val[] values) {
             childGenerator.set(values);
-            current = calculator.calc(current, childGenerator.eval());
             count++;
+            if (hasPrimitive) {
+                final double val = childGenerator.evalDouble();
+                if (!Double.isNaN(val)) {
+                    primitive = calculator.op(primitive, val);
+                    current = null;
+                    return;
+                }
+            }
+            setCurrent(calculator.calc(getCurrent(), childGenerator.eval()));
+        }
+
+        @Override
+        public void setBatch(final ValBlock block) {
+            final int size = block.size();
+            final double[] doubles = block.borrowDoubles();
+            final Val[] vals = block.borrowVals();
+            childGenerator.evalBatch(block, doubles, vals);
+            count += size;
+
+            int i = 0;
+            while (i < size) {
+                if (hasPrimitive) {
+                    // Fold each run of numbers into a local so that the loop only touches primitives.
+                    final int start = i;
+                    double total = primitive;
+                    while (i < size && !Double.isNaN(doubles[i])) {
+                        total = calculator.op(total, doubles[i]);
+                        i++;
+                    }
+                    if (i > start) {
+                        primitive = total;
+                        current = null;
+                    }
+                }
+                if (i < size) {
+                    setCurrent(calculator.calc(getCurrent(), ValBlock.val(doubles, vals, i)));
+                    i++;
+                }
+            }
+
+            block.release(doubles, vals);
         }
 
         @Override
         public Val eval() {
+            if (current == null) {
+                return ValDouble.create(primitive / count);
+            }
             if (!current.type().isValue() || count == 0) {
                 if (current.type().isError()) {
                     return current;
@@ -79,14 +129,52 @@ class Average extends AbstractManyChildFunction implements AggregateFunction {
             return ValDouble.create(current.toDouble() / count);
         }
 
+        @Override
+        public double evalDouble() {
+            if (current == null) {
+                return primitive / count;
+            }
+            return super.evalDouble();
+        }
+
         @Override
         public void merge(final Generator generator) {
             final AggregateGen aggregateGen = (AggregateGen) generator;
-            current = calculator.calc(current, aggregateGen.current);
+            setCurrent(calculator.calc(getCurrent(), aggregateGen.getCurrent()));
             count += aggregateGen.count;
 
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeVal(getCurrent());
+            output.writeInt(count);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            setCurrent(input.readVal());
+            count = input.readInt();
+        }
+
+        private Val getCurrent() {
+            if (current == null) {
+                current = ValDouble.create(primitive);
+            }
+            return current;
+        }
+
+        private void setCurrent(final Val current) {
+            this.current = current;
+            final Double val = current.toDouble();
+            hasPrimitive = val != null;
+            if (hasPrimitive) {
+                primitive = val;
+            }
+        }
     }
 
     private static class Gen extends AbstractManyChildGenerator {
@@ -108,6 +196,12 @@ class Average extends AbstractManyChildFunction implements AggregateFunction {
 
         @Override
         public Val eval() {
+            // Avoid creating intermediate values when all of the children produce numbers.
+            final double result = evalDouble();
+            if (!Double.isNaN(result)) {
+                return ValDouble.create(result);
+            }
+
             Val value = ValNull.INSTANCE;
             for (final Generator gen : childGenerators) {
                 final Val val = gen.eval();
@@ -121,5 +215,10 @@ class Average extends AbstractManyChildFunction implements AggregateFunction {
             }
             return ValDouble.create(value.toDouble() / childGenerators.length);
         }
+
+        @Override
+        public double evalDouble() {
+            return calculator.calc(childGenerators) / childGenerators.length;
+        }
     }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache that can be read and written by many threads without taking a shared lock. Each entry records
+ * roughly when it was last used and, once the cache grows beyond its maximum size, a single thread evicts the least
+ * recently used entries in a batch so that eviction is approximately LRU and its cost is spread over many misses.
+ */
+final class BoundedCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BoundedCache.class);
+
+    // Only record the time of a use when the recorded time is older than this so that hot entries are not written
+    // to by every thread that reads them.
+    private static final long ACCESS_RESOLUTION_NANOS = 1_000_000L;
+
+    private final String name;
+    private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile int maxEntries;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    BoundedCache(final String name, final int maxEntries) {
+        this.name = name;
+        setMaxEntries(maxEntries);
+    }
+
+    /**
+     * Get the cached value for the key, computing and caching it if it is not present. If several threads miss the
+     * same key at the same time only one of them computes the value.
+     */
+    V computeIfAbsent(final K key, final Function<K, V> function) {
+        Entry<V> entry = map.get(key);
+        if (entry != null) {
+            hitCount.increment();
+            entry.touch();
+            return entry.value;
+        }
+
+        final boolean[] computed = new boolean[1];
+        entry = map.computeIfAbsent(key, k -> {
+            computed[0] = true;
+            return new Entry<>(function.apply(k));
+        });
+        if (computed[0]) {
+            missCount.increment();
+            evictIfFull();
+        } else {
+            hitCount.increment();
+            entry.touch();
+        }
+        return entry.value;
+    }
+
+    /**
+     * @return The cached value for the key or null if it is not present.
+     */
+    V get(final K key) {
+        final Entry<V> entry = map.get(key);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        entry.touch();
+        return entry.value;
+    }
+
+    void put(final K key, final V value) {
+        if (map.put(key, new Entry<>(value)) == null) {
+            evictIfFull();
+        }
+    }
+
+    private void evictIfFull() {
+        // Other threads carry on without waiting if one is already evicting so check again once we have finished in
+        // case they added entries while we were evicting.
+        while (map.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                final int max = maxEntries;
+                final int size = map.size();
+                // Evict a tenth of the entries so that not every miss needs to evict.
+                final int target = max - max / 10;
+                if (size > max) {
+                    final long[] accessTimes = new long[size];
+                    int count = 0;
+                    for (final Entry<V> entry : map.values()) {
+                        if (count == accessTimes.length) {
+                            break;
+                        }
+                        accessTimes[count++] = entry.lastAccess;
+                    }
+                    Arrays.sort(accessTimes, 0, count);
+
+                    // Remove everything used no later than the threshold. Entries can be added and used while we
+                    // scan so the size we end with is approximate.
+                    final long threshold = accessTimes[Math.max(0, Math.min(count, size - target) - 1)];
+                    for (final Map.Entry<K, Entry<V>> entry : map.entrySet()) {
+                        if (entry.getValue().lastAccess <= threshold && map.remove(entry.getKey(), entry.getValue())) {
+                            if (LOGGER.isDebugEnabled()) {
+                                LOGGER.debug("Evicting old " + name + ": " + entry.getKey());
+                            }
+                            evictionCount.increment();
+                        }
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Change the maximum number of entries. If the cache is now too big then entries are evicted the next time a
+     * value is added.
+     */
+    void setMaxEntries(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    void clear() {
+        map.clear();
+    }
+
+    CacheStats getStats() {
+        return new CacheStats(name,
+                size(),
+                maxEntries,
+                hitCount.sum(),
+                missCount.sum(),
+                evictionCount.sum());
+    }
+
+    @Override
+    public String toString() {
+        return getStats().toString();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private volatile long lastAccess;
+
+        Entry(final V value) {
+            this.value = value;
+            this.lastAccess = System.nanoTime();
+        }
+
+        void touch() {
+            final long now = System.nanoTime();
+            if (now - lastAccess > ACCESS_RESOLUTION_NANOS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+/**
+ * A snapshot of the size and counters of one of the caches used by functions, e.g. the cache of compiled regular
+ * expressions.
+ */
+public final class CacheStats {
+    private final String name;
+    private final int size;
+    private final int maxEntries;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    CacheStats(final String name,
+               final int size,
+               final int maxEntries,
+               final long hitCount,
+               final long missCount,
+               final long evictionCount) {
+        this.name = name;
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public double getHitRate() {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0
+                ? 1
+                : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "name='" + name + '\'' +
+                ", size=" + size +
+                ", maxEntries=" + maxEntries +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+}
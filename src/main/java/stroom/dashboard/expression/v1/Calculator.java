@@ -42,5 +42,69 @@ abstract class Calculator implements Serializable {
         }
     }
 
+    /**
+     * Primitive equivalent of applying calc() to the values of each generator in turn. NaN is returned if any
+     * generator does not produce a number or the calculation fails so that the caller can fall back to calc().
+     */
+    double calc(final Generator[] generators) {
+        try {
+            double cur = generators[0].evalDouble();
+            if (Double.isNaN(cur)) {
+                return cur;
+            }
+            cur = start(cur);
+
+            for (int i = 1; i < generators.length; i++) {
+                final double val = generators[i].evalDouble();
+                if (Double.isNaN(val)) {
+                    return val;
+                }
+                cur = op(cur, val);
+            }
+            return cur;
+
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Batch equivalent of calc(Generator[]) that combines each value with the current value in the same position.
+     * A position becomes NaN if either value is NaN or the calculation fails so that the caller can fall back to
+     * calc() for that row. Calculators whose operation cannot fail override this with a plain loop that the JIT
+     * can vectorise.
+     */
+    void calc(final double[] current, final double[] values, final int size) {
+        for (int i = 0; i < size; i++) {
+            final double cur = current[i];
+            final double val = values[i];
+            if (Double.isNaN(cur) || Double.isNaN(val)) {
+                current[i] = Double.NaN;
+            } else {
+                try {
+                    current[i] = op(cur, val);
+                } catch (RuntimeException e) {
+                    current[i] = Double.NaN;
+                }
+            }
+        }
+    }
+
+    /**
+     * Primitive equivalent of calc() for the first value where there is no current value to combine it with.
+     */
+    double start(final double val) {
+        return val;
+    }
+
+    /**
+     * Batch equivalent of start().
+     */
+    void start(final double[] values, final int size) {
+        for (int i = 0; i < size; i++) {
+            values[i] = start(values[i]);
+        }
+    }
+
     protected abstract double op(final double cur, final double val);
 }
@@ -43,7 +43,12 @@ class Ceiling extends AbstractRoundingFunction {
                 return ValNull.INSTANCE;
             }
 
-            return ValDouble.create(Math.ceil(val));
+            return ValDouble.create(calcDouble(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            return Math.ceil(value);
         }
     }
 
@@ -63,7 +68,12 @@ class Ceiling extends AbstractRoundingFunction {
                 return ValNull.INSTANCE;
             }
 
-            return ValDouble.create(Math.ceil(val * multiplier) / multiplier);
+            return ValDouble.create(calcDouble(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            return Math.ceil(value * multiplier) / multiplier;
         }
     }
 }
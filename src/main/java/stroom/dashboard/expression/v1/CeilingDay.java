@@ -16,8 +16,6 @@
 
 package stroom.dashboard.expression.v1;
 
-import java.time.LocalDateTime;
-
 class CeilingDay extends RoundDate {
     static final String NAME = "ceilingDay";
     private static final Calc CALC = new Calc();
@@ -35,12 +33,8 @@ class CeilingDay extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
-            LocalDateTime result = dateTime.toLocalDate().atStartOfDay();
-            if (dateTime.isAfter(result)) {
-                result = result.plusDays(1);
-            }
-            return result;
+        public long calcLong(final long value) {
+            return ceiling(value, MILLIS_PER_DAY);
         }
     }
 }
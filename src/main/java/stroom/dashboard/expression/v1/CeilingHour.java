@@ -16,9 +16,6 @@
 
 package stroom.dashboard.expression.v1;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-
 class CeilingHour extends RoundDate {
     static final String NAME = "ceilingHour";
     private static final Calc CALC = new Calc();
@@ -36,12 +33,8 @@ class CeilingHour extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
-            LocalDateTime result = dateTime.truncatedTo(ChronoUnit.HOURS);
-            if (dateTime.isAfter(result)) {
-                result = result.plusHours(1);
-            }
-            return result;
+        public long calcLong(final long value) {
+            return ceiling(value, MILLIS_PER_HOUR);
         }
     }
 }
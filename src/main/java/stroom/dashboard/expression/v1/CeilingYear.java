@@ -35,7 +35,19 @@ class CeilingYear extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
+        public long calcLong(final long value) {
+            final int month = MonthTable.monthIndex(value);
+            if (month == MonthTable.NOT_IN_TABLE) {
+                return adjustDateTime(value, this::adjust);
+            }
+
+            final int year = MonthTable.yearIndex(month);
+            return value > MonthTable.monthStart(year)
+                    ? MonthTable.monthStart(year + 12)
+                    : MonthTable.monthStart(year);
+        }
+
+        private LocalDateTime adjust(final LocalDateTime dateTime) {
             LocalDateTime result = dateTime.toLocalDate().withDayOfYear(1).atStartOfDay();
             if (dateTime.isAfter(result)) {
                 result = result.plusYears(1);
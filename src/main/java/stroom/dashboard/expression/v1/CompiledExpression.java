@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+/**
+ * An immutable, parsed expression that can be shared between threads and queries. Unlike {@link Expression} the static
+ * mapped values are fixed at compile time so the underlying function tree is never mutated after creation and can be
+ * used to create any number of generators.
+ */
+public final class CompiledExpression {
+    private final String input;
+    private final Expression expression;
+    private final String[] createdFields;
+
+    CompiledExpression(final String input, final Expression expression, final String[] createdFields) {
+        this.input = input;
+        this.expression = expression;
+        this.createdFields = createdFields;
+    }
+
+    /**
+     * Create a generator to generate a value for a cell based on this expression.
+     *
+     * @return A new generator.
+     */
+    public Generator createGenerator() {
+        return expression.createGenerator();
+    }
+
+    /**
+     * @return True if this expression or any of its child functions aggregate data.
+     */
+    public boolean hasAggregate() {
+        return expression.hasAggregate();
+    }
+
+    /**
+     * @return The expression text that this plan was compiled from.
+     */
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * Add the fields that were added to the field index map when this expression was parsed to another field index map
+     * with the same layout, in the same order, so that field references resolve to the same positions.
+     */
+    void applyCreatedFields(final FieldIndexMap fieldIndexMap) {
+        for (final String field : createdFields) {
+            fieldIndexMap.create(field);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
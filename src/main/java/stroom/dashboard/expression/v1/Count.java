@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 class Count extends AbstractFunction {
     static final String NAME = "count";
 
@@ -48,6 +50,11 @@ class Count extends AbstractFunction {
             count++;
         }
 
+        @Override
+        public void setBatch(final ValBlock block) {
+            count += block.size();
+        }
+
         @Override
         public Val eval() {
             return ValLong.create(count);
@@ -59,5 +66,17 @@ class Count extends AbstractFunction {
             count += countGen.count;
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeLong(count);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            count = input.readLong();
+        }
     }
 }
@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -46,6 +47,7 @@ class CountGroups extends AbstractFunction {
 
         private final Set<Key> childGroups = new HashSet<>();
         private long nonGroupedChildCount;
+        private long childGroupsSize;
 
         @Override
         public Val eval() {
@@ -62,7 +64,7 @@ class CountGroups extends AbstractFunction {
             if (key == null) {
                 nonGroupedChildCount++;
             } else {
-                childGroups.add(key);
+                add(key);
             }
         }
 
@@ -70,8 +72,43 @@ class CountGroups extends AbstractFunction {
         public void merge(final Generator generator) {
             final Gen countGen = (Gen) generator;
             nonGroupedChildCount += countGen.nonGroupedChildCount;
-            childGroups.addAll(countGen.childGroups);
+            for (final Key key : countGen.childGroups) {
+                add(key);
+            }
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeLong(nonGroupedChildCount);
+            output.writeSize(childGroups.size());
+            for (final Key key : childGroups) {
+                output.writeKey(key);
+            }
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            nonGroupedChildCount = input.readLong();
+            childGroups.clear();
+            childGroupsSize = 0;
+            final int size = input.readSize();
+            for (int i = 0; i < size; i++) {
+                add(input.readKey());
+            }
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + SizeEstimates.HASH_SET + childGroupsSize;
+        }
+
+        private void add(final Key key) {
+            if (childGroups.add(key)) {
+                childGroupsSize += SizeEstimates.HASH_ENTRY + key.estimatedSizeInBytes();
+            }
+        }
     }
 }
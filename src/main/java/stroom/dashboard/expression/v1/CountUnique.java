@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.HashSet;
 import java.util.Set;
@@ -75,6 +76,7 @@ class CountUnique extends AbstractFunction {
         private static final long serialVersionUID = -6770724151493320673L;
 
         private final Set<Val> uniqueValues = new HashSet<>();
+        private long uniqueValuesSize;
 
         Gen(final Generator childGenerator) {
             super(childGenerator);
@@ -85,7 +87,7 @@ class CountUnique extends AbstractFunction {
             childGenerator.set(values);
             final Val value = childGenerator.eval();
             if (value.type().isValue()) {
-                uniqueValues.add(value);
+                add(value);
             }
         }
 
@@ -97,8 +99,41 @@ class CountUnique extends AbstractFunction {
         @Override
         public void merge(final Generator generator) {
             final Gen gen = (Gen) generator;
-            uniqueValues.addAll(gen.uniqueValues);
+            for (final Val value : gen.uniqueValues) {
+                add(value);
+            }
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeSize(uniqueValues.size());
+            for (final Val val : uniqueValues) {
+                output.writeVal(val);
+            }
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            uniqueValues.clear();
+            uniqueValuesSize = 0;
+            final int size = input.readSize();
+            for (int i = 0; i < size; i++) {
+                add(input.readVal());
+            }
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + SizeEstimates.HASH_SET + uniqueValuesSize;
+        }
+
+        private void add(final Val value) {
+            if (uniqueValues.add(value)) {
+                uniqueValuesSize += SizeEstimates.HASH_ENTRY + SizeEstimates.val(value);
+            }
+        }
     }
 }
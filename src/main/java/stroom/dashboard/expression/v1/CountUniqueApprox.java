@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+class CountUniqueApprox extends AbstractFunction {
+    static final String NAME = "countUniqueApprox";
+    private static final int DEFAULT_PRECISION = 12;
+
+    private Generator gen;
+    private Function function;
+    private int precision = DEFAULT_PRECISION;
+
+    public CountUniqueApprox(final String name) {
+        super(name, 1, 2);
+    }
+
+    @Override
+    public void setParams(final Param[] params) throws ParseException {
+        super.setParams(params);
+
+        if (params.length == 2) {
+            final Val val = ParamParseUtil.getStaticValue(params[1]);
+            final Integer precision = val != null ? val.toInteger() : null;
+            if (precision == null
+                    || precision < HyperLogLog.MIN_PRECISION
+                    || precision > HyperLogLog.MAX_PRECISION) {
+                throw new ParseException("Precision argument of '" + name + "' must be a number between " +
+                        HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION, 0);
+            }
+            this.precision = precision;
+        }
+
+        final Param param = params[0];
+        if (param instanceof Function) {
+            function = (Function) param;
+
+            if (function.hasAggregate()) {
+                throw new ParseException(name + " cannot be applied to aggregating function", 0);
+            }
+
+        } else {
+            /*
+             * Optimise replacement of static input in case user does something
+             * stupid.
+             */
+            gen = new StaticValueFunction(ValLong.create(1)).createGenerator();
+        }
+    }
+
+    @Override
+    public Generator createGenerator() {
+        if (gen != null) {
+            return gen;
+        }
+
+        final Generator childGenerator = function.createGenerator();
+        return new Gen(childGenerator, precision);
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    @Override
+    public boolean hasAggregate() {
+        return isAggregate();
+    }
+
+    private static class Gen extends AbstractSingleChildGenerator {
+        private static final long serialVersionUID = 3391485938587745211L;
+
+        private final HyperLogLog hyperLogLog;
+
+        Gen(final Generator childGenerator, final int precision) {
+            super(childGenerator);
+            hyperLogLog = new HyperLogLog(precision);
+        }
+
+        @Override
+        public void set(final Val[] values) {
+            childGenerator.set(values);
+            final Val value = childGenerator.eval();
+            if (value.type().isValue()) {
+                hyperLogLog.add(HyperLogLog.hash(value));
+            }
+        }
+
+        @Override
+        public Val eval() {
+            return ValLong.create(hyperLogLog.estimate());
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            final Gen gen = (Gen) generator;
+            hyperLogLog.merge(gen.hyperLogLog);
+            super.merge(generator);
+        }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            hyperLogLog.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            hyperLogLog.read(input);
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + hyperLogLog.estimatedSizeInBytes();
+        }
+    }
+}
@@ -49,6 +49,11 @@ class CurrentUser extends AbstractFunction {
         return gen;
     }
 
+    @Override
+    boolean isFoldable() {
+        return false;
+    }
+
     @Override
     public boolean hasAggregate() {
         return false;
@@ -31,6 +31,16 @@ public final class DateUtil {
     static final String DEFAULT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSXX";
     static final DateTimeFormatter DEFAULT_FORMATTER = DateTimeFormatter.ofPattern(DEFAULT_PATTERN);
     private static final int DATE_LENGTH = "2000-01-01T00:00:00.000Z".length();
+    // The positions of the digits in a date with the default pattern, e.g. 2000-01-01T00:00:00.000Z.
+    private static final int[] DIGIT_POSITIONS = {0, 1, 2, 3, 5, 6, 8, 9, 11, 12, 14, 15, 17, 18, 20, 21, 22};
+    private static final long DAYS_0000_TO_1970 = (146097 * 5L) - (30L * 365L + 7L);
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /**
+     * Returned by {@link #tryParseNormalDateTimeString(String)} for strings that are not dates. No date with a four
+     * digit year can be this far from the epoch.
+     */
+    static final long NOT_A_DATE = Long.MIN_VALUE;
 
     private DateUtil() {
         // Private constructor.
@@ -57,16 +67,109 @@ public final class DateUtil {
      * @throws IllegalArgumentException if date does not parse
      */
     public static long parseNormalDateTimeString(final String date) {
-        if (!looksLikeDate(date)) {
+        final long millis = tryParseNormalDateTimeString(date);
+        if (millis == NOT_A_DATE) {
             throw new IllegalArgumentException("Unable to parse date: \"" + date + '"');
         }
+        return millis;
+    }
 
-        final ZonedDateTime dateTime = parseInternal(date, DEFAULT_FORMATTER, ZoneOffset.UTC);
-        if (dateTime == null) {
-            throw new IllegalArgumentException("Unable to parse date: \"" + date + '"');
+    /**
+     * Parse a 'normal' type date without throwing an exception or creating any objects if the string is not a date.
+     * Dates are parsed by hand rather than with the default formatter unless a field is out of its usual range, e.g.
+     * the 30th of February, in which case the formatter decides how to resolve it.
+     *
+     * @param date string date
+     * @return date as milliseconds since epoch or {@link #NOT_A_DATE} if the string is not a date
+     */
+    static long tryParseNormalDateTimeString(final String date) {
+        if (!looksLikeDate(date) ||
+                date.charAt(4) != '-' ||
+                date.charAt(7) != '-' ||
+                date.charAt(10) != 'T' ||
+                date.charAt(13) != ':' ||
+                date.charAt(16) != ':' ||
+                date.charAt(19) != '.') {
+            return NOT_A_DATE;
+        }
+        for (final int position : DIGIT_POSITIONS) {
+            final char c = date.charAt(position);
+            if (c < '0' || c > '9') {
+                return NOT_A_DATE;
+            }
         }
 
-        return dateTime.toInstant().toEpochMilli();
+        final int year = digits(date, 0, 4);
+        final int month = digits(date, 5, 2);
+        final int day = digits(date, 8, 2);
+        final int hour = digits(date, 11, 2);
+        final int minute = digits(date, 14, 2);
+        final int second = digits(date, 17, 2);
+        final int milli = digits(date, 20, 3);
+
+        if (year == 0 ||
+                month < 1 ||
+                month > 12 ||
+                day < 1 ||
+                day > lengthOfMonth(year, month) ||
+                hour > 23 ||
+                minute > 59 ||
+                second > 59) {
+            try {
+                return parseInternal(date, DEFAULT_FORMATTER, ZoneOffset.UTC).toInstant().toEpochMilli();
+            } catch (final RuntimeException e) {
+                return NOT_A_DATE;
+            }
+        }
+
+        return (epochDay(year, month, day) * MILLIS_PER_DAY) +
+                (hour * 3_600_000L) +
+                (minute * 60_000L) +
+                (second * 1000L) +
+                milli;
+    }
+
+    private static int digits(final String string, final int start, final int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            value = (value * 10) + (string.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(final int year) {
+        return ((year & 3) == 0) && ((year % 100) != 0 || (year % 400) == 0);
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * The same calculation as LocalDate.toEpochDay() for a positive year.
+     */
+    private static long epochDay(final int year, final int month, final int day) {
+        long total = 365L * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
     }
 
     public static ZoneId getTimeZone(final String timeZone) throws ParseException {
@@ -25,6 +25,7 @@ class Decode extends AbstractManyChildFunction implements Serializable {
     private static final long serialVersionUID = -305845496003936297L;
     private Generator gen;
     private boolean simple;
+    private Pattern[] patterns;
 
     public Decode(final String name) {
         super(name, 4, Integer.MAX_VALUE);
@@ -68,6 +69,7 @@ class Decode extends AbstractManyChildFunction implements Serializable {
             gen = new StaticValueFunction(ValString.create(newValue)).createGenerator();
 
         } else {
+            patterns = new Pattern[params.length];
             for (int i = 1; i < params.length - 1; i += 2) {
                 if (params[i] instanceof Val) {
                     // Test regex is valid.
@@ -75,7 +77,7 @@ class Decode extends AbstractManyChildFunction implements Serializable {
                     if (regex.length() == 0) {
                         throw new ParseException("An empty regex has been defined for argument of '" + name + "' function", 0);
                     }
-                    PatternCache.get(regex);
+                    patterns[i] = PatternCache.get(regex);
                 }
             }
         }
@@ -91,7 +93,11 @@ class Decode extends AbstractManyChildFunction implements Serializable {
 
     @Override
     protected Generator createGenerator(final Generator[] childGenerators) {
-        return new Gen(childGenerators);
+        final RegexMatcher[] regexMatchers = new RegexMatcher[patterns.length];
+        for (int i = 1; i < patterns.length - 1; i += 2) {
+            regexMatchers[i] = new RegexMatcher(patterns[i]);
+        }
+        return new Gen(childGenerators, regexMatchers);
     }
 
     @Override
@@ -105,8 +111,11 @@ class Decode extends AbstractManyChildFunction implements Serializable {
     private static class Gen extends AbstractManyChildGenerator {
         private static final long serialVersionUID = 8153777070911899616L;
 
-        Gen(final Generator[] childGenerators) {
+        private final RegexMatcher[] regexMatchers;
+
+        Gen(final Generator[] childGenerators, final RegexMatcher[] regexMatchers) {
             super(childGenerators);
+            this.regexMatchers = regexMatchers;
         }
 
         @Override
@@ -132,18 +141,21 @@ class Decode extends AbstractManyChildFunction implements Serializable {
                 String newValue = newVal.toString();
 
                 for (int i = 1; i < childGenerators.length - 1; i += 2) {
-                    final Val valRegex = childGenerators[i].eval();
-                    if (!valRegex.type().isValue()) {
-                        return ValErr.wrap(valRegex);
-                    }
+                    final RegexMatcher regexMatcher = regexMatchers[i];
+                    String regex = null;
+                    if (!regexMatcher.isStatic()) {
+                        final Val valRegex = childGenerators[i].eval();
+                        if (!valRegex.type().isValue()) {
+                            return ValErr.wrap(valRegex);
+                        }
 
-                    final String regex = valRegex.toString();
-                    if (regex.length() == 0) {
-                        return ValErr.create("Empty regex");
+                        regex = valRegex.toString();
+                        if (regex.length() == 0) {
+                            return ValErr.create("Empty regex");
+                        }
                     }
 
-                    final Pattern pattern = PatternCache.get(regex);
-                    if (pattern.matcher(value).matches()) {
+                    if (regexMatcher.matcher(regex, value).matches()) {
                         newVal = childGenerators[i + 1].eval();
                         if (!newVal.type().isValue()) {
                             return ValErr.wrap(newVal);
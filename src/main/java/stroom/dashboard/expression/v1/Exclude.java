@@ -33,12 +33,12 @@ class Exclude extends AbstractIncludeExclude implements Serializable {
 
     @Override
     protected Generator createGenerator(final Generator[] childGenerators) {
-        return new Gen(childGenerators);
+        return new Gen(childGenerators, createRegexMatchers());
     }
 
     private static class Gen extends AbstractGen {
-        Gen(final Generator[] childGenerators) {
-            super(childGenerators);
+        Gen(final Generator[] childGenerators, final RegexMatcher[] regexMatchers) {
+            super(childGenerators, regexMatchers);
         }
 
         @Override
@@ -34,6 +34,10 @@ public class Expression implements Function {
         this.hasAggregate = function.hasAggregate();
     }
 
+    Function getFunction() {
+        return function;
+    }
+
     @Override
     public void setStaticMappedValues(final Map<String, String> staticMappedValues) {
         if (function != null) {
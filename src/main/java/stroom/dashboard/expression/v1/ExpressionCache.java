@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches compiled expressions keyed by expression text, field index map layout and static mapped values so that
+ * repeatedly parsing the same column expressions, e.g. when a dashboard is refreshed, does not need to tokenise and
+ * parse the expression again.
+ */
+public class ExpressionCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpressionCache.class);
+
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final ExpressionParser parser;
+    private final BoundedCache<Key, CachedExpression> cache;
+
+    public ExpressionCache(final ExpressionParser parser) {
+        this(parser, DEFAULT_MAX_ENTRIES);
+    }
+
+    public ExpressionCache(final ExpressionParser parser, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be greater than 0");
+        }
+
+        this.parser = parser;
+        this.cache = new BoundedCache<>("expression", maxEntries);
+    }
+
+    /**
+     * Get a compiled expression for the supplied input, parsing it only if an expression with the same text has not
+     * already been parsed against a field index map with the same layout and the same static mapped values.
+     * <p>
+     * Any fields that parsing would add to the supplied field index map are added to it whether or not the compiled
+     * expression came from the cache.
+     *
+     * @param fieldIndexMap      The field index map to resolve field references against.
+     * @param input              The expression text.
+     * @param staticMappedValues The static mapped values for the param() and params() functions to use.
+     * @return A compiled expression or null if the input is empty.
+     * @throws ParseException If the expression cannot be parsed.
+     */
+    public CompiledExpression get(final FieldIndexMap fieldIndexMap,
+                                  final String input,
+                                  final Map<String, String> staticMappedValues) throws ParseException {
+        if (input == null || input.trim().length() == 0) {
+            return null;
+        }
+
+        final Key key = new Key(input, fieldIndexMap, staticMappedValues);
+        CachedExpression cachedExpression = cache.get(key);
+        if (cachedExpression != null) {
+            if (cachedExpression.compiledExpression != null) {
+                cachedExpression.compiledExpression.applyCreatedFields(fieldIndexMap);
+            }
+        } else {
+            // Parse outside of the cache so that the field index map is always updated by this thread. If two threads
+            // compile the same expression at the same time then they will produce identical results so it doesn't
+            // matter which is kept.
+            cachedExpression = compile(fieldIndexMap, input, staticMappedValues);
+            cache.put(key, cachedExpression);
+        }
+
+        if (cachedExpression.exception != null) {
+            final ParseException e = cachedExpression.exception;
+            throw new ParseException(e.getMessage(), e.getErrorOffset());
+        }
+        return cachedExpression.compiledExpression;
+    }
+
+    private CachedExpression compile(final FieldIndexMap fieldIndexMap,
+                                     final String input,
+                                     final Map<String, String> staticMappedValues) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Compiling expression: " + input);
+        }
+
+        final int initialSize = fieldIndexMap.size();
+        try {
+            final Expression expression = parser.parse(fieldIndexMap, input);
+            if (staticMappedValues != null) {
+                expression.setStaticMappedValues(staticMappedValues);
+            }
+
+            // Remember any fields that were created by parsing so that we can create them again on a cache hit.
+            final String[] createdFields = fieldIndexMap.getMap().entrySet()
+                    .stream()
+                    .filter(entry -> entry.getValue() >= initialSize)
+                    .sorted(Comparator.comparingInt(Map.Entry::getValue))
+                    .map(Map.Entry::getKey)
+                    .toArray(String[]::new);
+
+            return new CachedExpression(new CompiledExpression(input, expression, createdFields));
+        } catch (final ParseException e) {
+            return new CachedExpression(e);
+        }
+    }
+
+    public long getHitCount() {
+        return cache.getStats().getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getStats().getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getStats().getEvictionCount();
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionCache{" +
+                "size=" + size() +
+                ", hitCount=" + getHitCount() +
+                ", missCount=" + getMissCount() +
+                ", evictionCount=" + getEvictionCount() +
+                '}';
+    }
+
+    private static class Key {
+        private final String input;
+        private final Map<String, Integer> fieldLayout;
+        private final boolean autoCreate;
+        private final Map<String, String> staticMappedValues;
+        private final int hashCode;
+
+        Key(final String input,
+            final FieldIndexMap fieldIndexMap,
+            final Map<String, String> staticMappedValues) {
+            this.input = input;
+            this.fieldLayout = new HashMap<>(fieldIndexMap.getMap());
+            this.autoCreate = fieldIndexMap.isAutoCreate();
+            this.staticMappedValues = staticMappedValues == null
+                    ? Collections.emptyMap()
+                    : new HashMap<>(staticMappedValues);
+            this.hashCode = Objects.hash(input, fieldLayout, autoCreate, this.staticMappedValues);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return autoCreate == key.autoCreate &&
+                    input.equals(key.input) &&
+                    fieldLayout.equals(key.fieldLayout) &&
+                    staticMappedValues.equals(key.staticMappedValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return input;
+        }
+    }
+
+    private static class CachedExpression {
+        private final CompiledExpression compiledExpression;
+        private final ParseException exception;
+
+        CachedExpression(final CompiledExpression compiledExpression) {
+            this.compiledExpression = compiledExpression;
+            this.exception = null;
+        }
+
+        CachedExpression(final ParseException exception) {
+            this.compiledExpression = null;
+            this.exception = exception;
+        }
+    }
+}
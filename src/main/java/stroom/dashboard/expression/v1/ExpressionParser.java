@@ -17,15 +17,17 @@
 package stroom.dashboard.expression.v1;
 
 import stroom.dashboard.expression.v1.ExpressionTokeniser.Token;
+import stroom.dashboard.expression.v1.ExpressionTokeniser.TokenIterator;
 import stroom.dashboard.expression.v1.ExpressionTokeniser.Token.Type;
 
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 public class ExpressionParser {
-    // We deliberately exclude brackets as they are treated as an unnamed function.
+    // We deliberately exclude brackets as they are treated as an unnamed function. Each operator is applied in this
+    // order with operators of the same type applied from left to right.
     private static final Type[] BODMAS = new Type[]{
             Type.ORDER,
             Type.DIVISION,
@@ -43,6 +45,9 @@ public class ExpressionParser {
             Type.LESS_THAN_OR_EQUAL_TO
     };
 
+    // Constant functions do not read any values so are evaluated against an empty row.
+    private static final Val[] NO_VALUES = new Val[0];
+
     private final FunctionFactory functionFactory;
     private final ParamFactory paramFactory;
 
@@ -56,116 +61,173 @@ public class ExpressionParser {
             return null;
         }
 
-        // First tokenise the expression.
-        final List<Token> tokens = new ExpressionTokeniser().tokenise(input);
+        // Tokenise the expression as we go. The objects of every open function are kept on one list and each open
+        // function remembers where its start token is. When a function is closed its objects are replaced with the
+        // function itself so innermost nested functions are created first.
+        final TokenIterator tokens = new ExpressionTokeniser().iterator(input);
+        final List<Param> objects = new ArrayList<>();
+        int[] functionStarts = new int[16];
+        Token[] openTokens = new Token[16];
+        int depth = 0;
+        while (tokens.hasNext()) {
+            final Token token = tokens.next();
+            final Type type = token.getType();
+            if (Type.UNIDENTIFIED.equals(type)) {
+                throw createUnidentifiedException(token);
+
+            } else if (Type.FUNCTION_START.equals(type)) {
+                if (depth == functionStarts.length) {
+                    functionStarts = Arrays.copyOf(functionStarts, depth * 2);
+                    openTokens = Arrays.copyOf(openTokens, depth * 2);
+                }
+                functionStarts[depth] = objects.size();
+                openTokens[depth] = token;
+                depth++;
+                objects.add(token);
+
+            } else if (Type.FUNCTION_END.equals(type)) {
+                if (depth == 0) {
+                    // Unidentified content anywhere in the expression is reported in preference to bad brackets.
+                    final ParseException e = validateRemaining(tokens, openTokens, 0, false);
+                    if (e != null) {
+                        throw e;
+                    }
+                    throw new ParseException("Unexpected close bracket found", token.getStart());
+                }
+
+                depth--;
+                final int start = functionStarts[depth];
+                final Function function;
+                try {
+                    function = getFunction(objects, start, objects.size(), fieldIndexMap);
+                } catch (final ParseException | RuntimeException e) {
+                    // Errors in the tokens themselves are reported in preference to errors creating functions.
+                    final ParseException validationException = validateRemaining(tokens, openTokens, depth, true);
+                    if (validationException != null) {
+                        throw validationException;
+                    }
+                    throw e;
+                }
 
-        // Do some preliminary validation of the tokens.
-        new ExpressionValidator().validate(tokens);
+                // Replace the function tokens and parameters with the function.
+                objects.subList(start, objects.size()).clear();
+                objects.add(function);
 
-        // Put tokens into an object array ready to replace with functions and remove whitespace.
-        List<Param> objects = new ArrayList<>(tokens.size());
-        for (final Token token : tokens) {
-            if (!Type.WHITESPACE.equals(token.getType())) {
+            } else if (!Type.WHITESPACE.equals(type)) {
                 objects.add(token);
             }
         }
 
-        // Repeatedly scan so that innermost nested functions are created first.
-        int lastSize = 0;
-        while (objects.size() != lastSize) {
-            lastSize = objects.size();
-            objects = processObjects(objects, fieldIndexMap);
+        if (depth > 0) {
+            throw createNoCloseBracketException(openTokens[depth - 1]);
         }
 
         // We should have a single object.
         if (objects.size() == 0) {
             return null;
-        } else if (objects.size() > 1) {
-            throw new ParseException("Expected only 1 object", -1);
         }
 
-        final Expression expression = new Expression();
-        expression.setParams(objects.toArray(new Param[0]));
-        return expression;
-    }
+        final Param param;
+        if (objects.size() == 1 && objects.get(0) instanceof Function) {
+            param = objects.get(0);
 
-    private List<Param> processObjects(final List<Param> objects, final FieldIndexMap fieldIndexMap) throws ParseException {
-        Token functionStart = null;
-        int start = -1;
-        int end;
-        for (int i = 0; i < objects.size(); i++) {
-            final Param object = objects.get(i);
-
-            if (object instanceof Token) {
-                final Token token = (Token) object;
-                if (Type.FUNCTION_START.equals(token.getType())) {
-                    functionStart = token;
-                    start = i;
-                } else if (Type.FUNCTION_END.equals(token.getType())) {
-                    if (functionStart == null) {
-                        throw new ParseException("Unexpected close bracket found", token.getStart());
+        } else {
+            // We should not have any comma, whitespace or unidentified tokens.
+            for (final Param object : objects) {
+                if (object instanceof Token) {
+                    final Token token = (Token) object;
+                    if (Type.COMMA.equals(token.getType()) || Type.WHITESPACE.equals(token.getType()) || Type.UNIDENTIFIED.equals(token.getType())) {
+                        throw new ParseException("Unexpected token found", token.getStart());
                     }
-
-                    end = i;
-                    final Function function = getFunction(objects, start, end, fieldIndexMap);
-
-                    // Create a new list of objects to sandwich this function.
-                    return sandwich(objects, function, start, end);
                 }
             }
-        }
 
-        // If we got here then there are no functions left. If there are no functions left to process then we can try
-        // and turn anything that remains into a single function.
-        if (objects.size() == 1 && objects.get(0) instanceof Function) {
-            return objects;
+            // Any content that remains must be a parameter or parameter expression.
+            param = getParam(objects, 0, objects.size(), fieldIndexMap);
         }
 
-        // We should not have any comma, whitespace or unidentified tokens.
-        for (final Param object : objects) {
-            if (object instanceof Token) {
-                final Token token = (Token) object;
-                if (Type.COMMA.equals(token.getType()) || Type.WHITESPACE.equals(token.getType()) || Type.UNIDENTIFIED.equals(token.getType())) {
-                    throw new ParseException("Unexpected token found", token.getStart());
+        final Expression expression = new Expression();
+        expression.setParams(new Param[]{param});
+        return expression;
+    }
+
+    /**
+     * Check the tokens that remain after an error has been found for unidentified content and, optionally, bad
+     * brackets as these problems are reported in preference to any error found while creating functions.
+     *
+     * @return An exception for the first problem found in the remaining tokens or null if there are none.
+     */
+    private ParseException validateRemaining(final TokenIterator tokens,
+                                             final Token[] openTokens,
+                                             final int depth,
+                                             final boolean checkBrackets) {
+        final List<Token> open = new ArrayList<>(Arrays.asList(openTokens).subList(0, depth));
+        ParseException bracketException = null;
+        while (tokens.hasNext()) {
+            final Token token = tokens.next();
+            final Type type = token.getType();
+            if (Type.UNIDENTIFIED.equals(type)) {
+                return createUnidentifiedException(token);
+            } else if (Type.FUNCTION_START.equals(type)) {
+                open.add(token);
+            } else if (Type.FUNCTION_END.equals(type) && bracketException == null) {
+                if (open.size() == 0) {
+                    bracketException = new ParseException("Unexpected close bracket found", token.getStart());
+                } else {
+                    open.remove(open.size() - 1);
                 }
             }
         }
 
-        // Any content that remains must be a parameter or parameter expression.
-        final Param param = getParam(copyList(objects, 0, objects.size() - 1), fieldIndexMap);
-        return Collections.singletonList(param);
+        if (!checkBrackets) {
+            return null;
+        }
+        if (bracketException != null) {
+            return bracketException;
+        }
+        if (open.size() > 0) {
+            return createNoCloseBracketException(open.get(open.size() - 1));
+        }
+        return null;
+    }
+
+    private ParseException createUnidentifiedException(final Token token) {
+        return new ParseException("Unexpected expression content '" + token.toString() + "'", token.getStart());
+    }
 
+    private ParseException createNoCloseBracketException(final Token token) {
+        return new ParseException("No close bracket found for function '" + token.toString() + "'", token.getStart());
     }
 
+    /**
+     * Create a function from the function start token at index `start` and the objects that follow it up to but
+     * excluding index `end`.
+     */
     private Function getFunction(final List<Param> objects, final int start, final int end, final FieldIndexMap fieldIndexMap) throws ParseException {
         // Get the function.
         final Token functionToken = (Token) objects.get(start);
 
-        int functionStart = start + 1;
-        int functionEnd = end - 1;
+        final int functionStart = start + 1;
         Param[] params;
 
         // Don't bother to try and get parameters if there can't be any.
-        if (functionStart <= functionEnd) {
+        if (functionStart < end) {
             // Process each parameter.
             int paramStart = -1;
-            final List<Param> paramList = new ArrayList<>((functionEnd - functionStart) + 1);
+            final List<Param> paramList = new ArrayList<>(end - functionStart);
 
             // Turn comma separated tokens into parameters.
-            for (int i = functionStart; i <= functionEnd; i++) {
+            for (int i = functionStart; i < end; i++) {
                 final Param object = objects.get(i);
                 if (object instanceof Token) {
                     final Token token = (Token) object;
                     if (Type.COMMA.equals(token.getType())) {
-                        // Ifg we haven't found a parameter from the previous token or object then this comma is unexpected.
+                        // If we haven't found a parameter from the previous token or object then this comma is unexpected.
                         if (paramStart == -1) {
                             throw new ParseException("Unexpected comma", token.getStart());
                         }
 
-                        final int paramEnd = i - 1;
-                        final Param param = getParam(copyList(objects, paramStart, paramEnd), fieldIndexMap);
-                        paramList.add(param);
-
+                        paramList.add(getParam(objects, paramStart, i, fieldIndexMap));
                         paramStart = -1;
                     } else if (paramStart == -1) {
                         paramStart = i;
@@ -177,8 +239,7 @@ public class ExpressionParser {
 
             // Capture last param if there is one.
             if (paramStart != -1) {
-                final Param param = getParam(copyList(objects, paramStart, functionEnd), fieldIndexMap);
-                paramList.add(param);
+                paramList.add(getParam(objects, paramStart, end, fieldIndexMap));
             }
 
             // Turn param list into an array.
@@ -213,184 +274,208 @@ public class ExpressionParser {
         function.setParams(params);
 
         // Return the function.
-        return function;
+        return fold(function);
     }
 
-    private Param getParam(final List<Param> objects, final FieldIndexMap fieldIndexMap) throws ParseException {
-        List<Param> newObjects = objects;
+    /**
+     * Create a parameter from the objects between index `from` and up to but excluding index `to`, applying any
+     * operators that they contain.
+     */
+    private Param getParam(final List<Param> objects, final int from, final int to, final FieldIndexMap fieldIndexMap) throws ParseException {
+        final int size = to - from;
 
         // If no objects are included to create this param then return null.
-        if (newObjects.size() == 0) {
+        if (size == 0) {
             return null;
         }
 
         // If there is only a single object then turn it into a parameter if necessary and return.
-        if (newObjects.size() == 1) {
-            final Param object = newObjects.get(0);
-            if (object instanceof Token) {
-                final Token token = (Token) object;
-                return paramFactory.create(fieldIndexMap, token);
-            }
-            return object;
+        if (size == 1) {
+            return toParam(objects.get(from), fieldIndexMap);
         }
 
-        // Repeatedly try and apply BODMAS operators.
-        int lastSize = 0;
-        while (newObjects.size() > 1 && newObjects.size() != lastSize) {
-            lastSize = newObjects.size();
-            newObjects = applyBODMAS(newObjects, fieldIndexMap);
+        // Link the objects together so that applying an operator can replace it and its operands with a function
+        // without copying the remaining objects. The first object always remains at the head of the list.
+        final Param[] values = objects.subList(from, to).toArray(new Param[0]);
+        final int[] prev = new int[size];
+        final int[] next = new int[size];
+        for (int i = 0; i < size; i++) {
+            prev[i] = i - 1;
+            next[i] = i + 1 < size
+                    ? i + 1
+                    : -1;
         }
+        int remaining = size;
 
-        // Repeatedly try and apply equality operators.
-        lastSize = 0;
-        while (newObjects.size() > 1 && newObjects.size() != lastSize) {
-            lastSize = newObjects.size();
-            newObjects = applyEquality(newObjects, fieldIndexMap);
-        }
+        // Addition and subtraction without a preceding param are allowed. In this form plus can be ignored and minus
+        // will negate the following param. The sign is applied at the precedence of addition and subtraction so that
+        // `-2^2` is `-(2^2)` as it is when written `0-2^2`.
+        final Type firstType = getTokenType(values[0]);
+        boolean leadingSign = (Type.ADDITION.equals(firstType) || Type.SUBTRACTION.equals(firstType))
+                && !isOperator(values[1]);
 
-        // If there is only a single object then turn it into a parameter if necessary and return.
-        if (newObjects.size() == 1) {
-            final Param object = newObjects.get(0);
-            if (object instanceof Token) {
-                final Token token = (Token) object;
-                return paramFactory.create(fieldIndexMap, token);
+        // Apply BODMAS operators.
+        for (final Type type : BODMAS) {
+            // Addition is the first of the operators that share the precedence of the sign.
+            if (leadingSign && Type.ADDITION.equals(type)) {
+                final Token token = (Token) values[0];
+                final Param rightParam = toParam(values[1], fieldIndexMap);
+                if (Type.ADDITION.equals(firstType)) {
+                    // Ignore positive sign as it is superfluous.
+                    values[0] = rightParam;
+                } else {
+                    // If there is a negative sign then negate the param.
+                    final Negate negate = new Negate(token.toString());
+                    negate.setParams(new Param[]{rightParam});
+                    values[0] = fold(negate);
+                }
+                unlink(1, prev, next);
+                values[1] = null;
+                remaining--;
+                leadingSign = false;
+            }
+
+            for (int i = 1; i < size && remaining > 1; i++) {
+                if (type.equals(getTokenType(values[i]))) {
+                    final Token token = (Token) values[i];
+                    final int leftParamIndex = prev[i];
+                    final int rightParamIndex = next[i];
+
+                    // The left param is checked first so an operator in its place is reported before a missing right
+                    // param.
+                    final Param leftParam = toParam(values[leftParamIndex], fieldIndexMap);
+                    if (rightParamIndex == -1) {
+                        throw new ParseException("No parameter after operator", token.getStart());
+                    }
+                    final Param rightParam = toParam(values[rightParamIndex], fieldIndexMap);
+
+                    final Function function = functionFactory.create(token.toString());
+                    function.setParams(new Param[]{leftParam, rightParam});
+
+                    // Replace the left param with the new function and remove the operator and right param.
+                    values[leftParamIndex] = fold(function);
+                    unlink(i, prev, next);
+                    unlink(rightParamIndex, prev, next);
+                    values[i] = null;
+                    values[rightParamIndex] = null;
+                    remaining -= 2;
+                }
             }
-            return object;
         }
 
-        // So we've got more than one object and no BODMAS or equality operators to apply - this is not allowed.
-        final Param object = newObjects.get(1);
-        if (object instanceof Token) {
-            final Token token = (Token) object;
-            throw new ParseException("Unexpected token", token.getStart());
+        // An operator at the start of the objects cannot have been applied.
+        if (remaining > 1 && isOperator(values[0])) {
+            throw new ParseException("No parameter before operator", ((Token) values[0]).getStart());
         }
 
-        throw new ParseException("Unexpected '" + object.toString() + "'", -1);
-    }
+        final Param[] remainingValues = new Param[remaining];
+        for (int i = 0, j = 0; i != -1; i = next[i], j++) {
+            remainingValues[j] = values[i];
+        }
 
-    private List<Param> applyBODMAS(final List<Param> objects, final FieldIndexMap fieldIndexMap) throws ParseException {
-        // If there is more than one object then apply BODMAS rules.
-        for (final Type type : BODMAS) {
-            for (int i = 0; i < objects.size(); i++) {
-                final Param object = objects.get(i);
-                if (object instanceof Token) {
-                    final Token token = (Token) object;
-                    if (type.equals(token.getType())) {
-                        int leftParamIndex = i - 1;
-                        int rightParamIndex = i + 1;
-
-                        // Get left param.
-                        final Param leftParam = getParam(copyList(objects, leftParamIndex, leftParamIndex), fieldIndexMap);
-                        // Get right param.
-                        final Param rightParam = getParam(copyList(objects, rightParamIndex, rightParamIndex), fieldIndexMap);
-
-                        // Addition and subtraction without a preceding param are allowed. In this form plus can be
-                        // ignored and minus will negate right param.
-                        if (leftParam == null && !Type.ADDITION.equals(type) && !Type.SUBTRACTION.equals(type)) {
-                            throw new ParseException("No parameter before operator", token.getStart());
-                        }
-                        if (rightParam == null) {
-                            throw new ParseException("No parameter after operator", token.getStart());
-                        }
+        return getEqualityParam(remainingValues, 0, remaining, fieldIndexMap);
+    }
 
-                        Param param = null;
-                        if (leftParam == null) {
-                            // Ignore positive sign as it is superfluous.
-                            if (Type.ADDITION.equals(type)) {
-                                param = rightParam;
-                            }
-
-                            // If there is a negative sign then negate the param.
-                            if (Type.SUBTRACTION.equals(type)) {
-                                final Negate negate = new Negate(token.toString());
-                                negate.setParams(new Param[]{rightParam});
-                                param = negate;
-                            }
-                        } else {
-                            final Function function = functionFactory.create(token.toString());
-                            function.setParams(new Param[]{leftParam, rightParam});
-                            param = function;
-                        }
+    private Param getEqualityParam(final Param[] values, final int from, final int to, final FieldIndexMap fieldIndexMap) throws ParseException {
+        final int size = to - from;
 
-                        // Return a new object list that sandwiches the new object.
-                        return sandwich(objects, param, leftParamIndex, rightParamIndex);
-                    }
-                }
-            }
+        // If no objects are included to create this param then return null.
+        if (size == 0) {
+            return null;
         }
 
-        return objects;
-    }
+        // If there is only a single object then turn it into a parameter if necessary and return.
+        if (size == 1) {
+            return toParam(values[from], fieldIndexMap);
+        }
 
-    private List<Param> applyEquality(final List<Param> objects, final FieldIndexMap fieldIndexMap) throws ParseException {
-        // If there is more than one object then apply equality rules.
+        // Split on the first equality operator of the first type we find.
         for (final Type type : EQUALITY) {
-            for (int i = 0; i < objects.size(); i++) {
-                final Param object = objects.get(i);
-                if (object instanceof Token) {
-                    final Token token = (Token) object;
-                    if (type.equals(token.getType())) {
-                        // Get before param.
-                        final Param leftParam = getParam(copyList(objects, 0, i - 1), fieldIndexMap);
-                        // Get after param.
-                        final Param rightParam = getParam(copyList(objects, i + 1, objects.size() - 1), fieldIndexMap);
-
-                        if (leftParam == null) {
-                            throw new ParseException("No parameter before operator", token.getStart());
-                        }
-                        if (rightParam == null) {
-                            throw new ParseException("No parameter after operator", token.getStart());
-                        }
+            for (int i = from; i < to; i++) {
+                if (type.equals(getTokenType(values[i]))) {
+                    final Token token = (Token) values[i];
+
+                    // Get before param.
+                    final Param leftParam = getEqualityParam(values, from, i, fieldIndexMap);
+                    // Get after param.
+                    final Param rightParam = getEqualityParam(values, i + 1, to, fieldIndexMap);
 
-                        final Function function = functionFactory.create(token.toString());
-                        function.setParams(new Param[]{leftParam, rightParam});
-                        return Collections.singletonList(function);
+                    if (leftParam == null) {
+                        throw new ParseException("No parameter before operator", token.getStart());
                     }
+                    if (rightParam == null) {
+                        throw new ParseException("No parameter after operator", token.getStart());
+                    }
+
+                    final Function function = functionFactory.create(token.toString());
+                    function.setParams(new Param[]{leftParam, rightParam});
+                    return fold(function);
                 }
             }
         }
 
-        return objects;
+        // So we've got more than one object and no BODMAS or equality operators to apply - this is not allowed.
+        final Param object = values[from + 1];
+        if (object instanceof Token) {
+            final Token token = (Token) object;
+            throw new ParseException("Unexpected token", token.getStart());
+        }
+
+        throw new ParseException("Unexpected '" + object.toString() + "'", -1);
     }
 
-    private List<Param> copyList(final List<Param> list, final int startIndex, final int endIndex) {
-        if (endIndex < startIndex) {
-            return Collections.emptyList();
+    /**
+     * Evaluate a function once if it will produce the same value for every row and replace it with a static value
+     * so that parent functions see a constant param and the function is not evaluated for each row.
+     */
+    private Function fold(final Function function) {
+        if (function instanceof AbstractFunction && ((AbstractFunction) function).isConstant()) {
+            try {
+                final Generator generator = function.createGenerator();
+                generator.set(NO_VALUES);
+                final Val value = generator.eval();
+                if (value != null) {
+                    return new StaticValueFunction(value, function);
+                }
+            } catch (final RuntimeException e) {
+                // Leave the function to be evaluated for each row.
+            }
         }
+        return function;
+    }
 
-        if (startIndex == endIndex) {
-            return Collections.singletonList(list.get(startIndex));
+    private Param toParam(final Param object, final FieldIndexMap fieldIndexMap) throws ParseException {
+        if (object instanceof Token) {
+            return paramFactory.create(fieldIndexMap, (Token) object);
         }
+        return object;
+    }
 
-        final List<Param> newList = new ArrayList<>((endIndex - startIndex) + 1);
-        for (int i = startIndex; i <= endIndex; i++) {
-            newList.add(list.get(i));
+    private Type getTokenType(final Param object) {
+        if (object instanceof Token) {
+            return ((Token) object).getType();
         }
-        return newList;
+        return null;
     }
 
-    private List<Param> sandwich(final List<Param> list, final Param object, final int insertStart, final int insertEnd) {
-        if (insertStart <= 0 && insertEnd >= list.size() - 1) {
-            return Collections.singletonList(object);
+    private boolean isOperator(final Param object) {
+        final Type type = getTokenType(object);
+        if (type != null) {
+            for (final Type bodmas : BODMAS) {
+                if (bodmas.equals(type)) {
+                    return true;
+                }
+            }
         }
+        return false;
+    }
 
-        // Make sure the insert start position will allow the new item to be added.
-        assert (insertStart < list.size() - 1);
-
-        // Add all objects that exist before the insert start position.
-        final List<Param> newList = new ArrayList<>(list.size() + 1);
-        for (int i = 0; i < insertStart; i++) {
-            newList.add(list.get(i));
+    private void unlink(final int index, final int[] prev, final int[] next) {
+        if (prev[index] != -1) {
+            next[prev[index]] = next[index];
         }
-
-        // Add the object.
-        newList.add(object);
-
-        // Add all objects that exist after the insert end position.
-        for (int i = insertEnd + 1; i < list.size(); i++) {
-            newList.add(list.get(i));
+        if (next[index] != -1) {
+            prev[next[index]] = prev[index];
         }
-
-        return newList;
     }
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of expressions, e.g. the columns of a table, parsed against the same field index map so that subtrees
+ * common to several of them are evaluated once per row rather than once per expression. A subtree is shared if
+ * it appears more than once across the expressions and has no aggregate or random function in it, e.g.
+ * extractHostFromUri(${url}) used by several columns.
+ */
+public final class ExpressionSet {
+    private final Expression[] expressions;
+    private final int slotCount;
+    private final int sharedCount;
+
+    /**
+     * @param parser        The parser to parse each expression with.
+     * @param fieldIndexMap The field index map to resolve field references against.
+     * @param inputs        The expression text of each expression.
+     * @throws ParseException If any of the expressions cannot be parsed.
+     */
+    public ExpressionSet(final ExpressionParser parser,
+                         final FieldIndexMap fieldIndexMap,
+                         final String... inputs) throws ParseException {
+        expressions = new Expression[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            expressions[i] = parser.parse(fieldIndexMap, inputs[i]);
+        }
+
+        // Count how many times each subtree appears and then replace those that appear more than once.
+        final Map<String, Integer> counts = new HashMap<>();
+        for (final Expression expression : expressions) {
+            if (expression != null) {
+                count(expression.getFunction(), counts);
+            }
+        }
+
+        final Map<String, SharedFunction> sharedFunctions = new HashMap<>();
+        for (final Expression expression : expressions) {
+            if (expression != null) {
+                final Param function = share(expression.getFunction(), counts, sharedFunctions);
+                if (function != expression.getFunction()) {
+                    expression.setParams(new Param[]{function});
+                }
+            }
+        }
+
+        // A subtree that only appears inside another shared subtree ends up with a single consumer so is not shared.
+        slotCount = sharedFunctions.size();
+        sharedCount = (int) sharedFunctions.values()
+                .stream()
+                .filter(SharedFunction::isShared)
+                .count();
+    }
+
+    private static void count(final Param param, final Map<String, Integer> counts) {
+        if (param instanceof AbstractFunction) {
+            final AbstractFunction function = (AbstractFunction) param;
+            if (isShareable(function)) {
+                counts.merge(function.toString(), 1, Integer::sum);
+            }
+            if (function.params != null) {
+                for (final Param child : function.params) {
+                    count(child, counts);
+                }
+            }
+        }
+    }
+
+    private static Param share(final Param param,
+                               final Map<String, Integer> counts,
+                               final Map<String, SharedFunction> sharedFunctions) throws ParseException {
+        if (!(param instanceof AbstractFunction)) {
+            return param;
+        }
+
+        final AbstractFunction function = (AbstractFunction) param;
+        if (isShareable(function)) {
+            final String key = function.toString();
+            if (counts.get(key) > 1) {
+                SharedFunction sharedFunction = sharedFunctions.get(key);
+                if (sharedFunction == null) {
+                    // Only the first occurrence is kept so it is the only one whose children need sharing.
+                    shareChildren(function, counts, sharedFunctions);
+                    sharedFunction = new SharedFunction(function, sharedFunctions.size());
+                    sharedFunctions.put(key, sharedFunction);
+                }
+                sharedFunction.addConsumer();
+                return sharedFunction;
+            }
+        }
+
+        shareChildren(function, counts, sharedFunctions);
+        return function;
+    }
+
+    private static void shareChildren(final AbstractFunction function,
+                                      final Map<String, Integer> counts,
+                                      final Map<String, SharedFunction> sharedFunctions) throws ParseException {
+        if (function.params != null) {
+            Param[] params = null;
+            for (int i = 0; i < function.params.length; i++) {
+                final Param child = share(function.params[i], counts, sharedFunctions);
+                if (child != function.params[i]) {
+                    if (params == null) {
+                        params = function.params.clone();
+                    }
+                    params[i] = child;
+                }
+            }
+
+            // Set the params again so that the function uses the shared children.
+            if (params != null) {
+                function.setParams(params);
+            }
+        }
+    }
+
+    private static boolean isShareable(final AbstractFunction function) {
+        // Value references and functions without params are cheap enough to evaluate for every consumer.
+        return !(function instanceof Ref) &&
+                function.params != null &&
+                function.params.length > 0 &&
+                !function.hasAggregate() &&
+                isDeterministic(function);
+    }
+
+    private static boolean isDeterministic(final AbstractFunction function) {
+        if (!function.isDeterministic()) {
+            return false;
+        }
+        if (function.params != null) {
+            for (final Param param : function.params) {
+                if (param instanceof AbstractFunction && !isDeterministic((AbstractFunction) param)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set some static mapped values that are used by the Param and Params functions.
+     *
+     * @param staticMappedValues The static mapped values for the Param and Params functions to use.
+     */
+    public void setStaticMappedValues(final Map<String, String> staticMappedValues) {
+        for (final Expression expression : expressions) {
+            if (expression != null) {
+                expression.setStaticMappedValues(staticMappedValues);
+            }
+        }
+    }
+
+    /**
+     * Create a generator for each expression with common subtrees shared between them.
+     *
+     * @return The generators, with null for any expression that was empty.
+     */
+    public GeneratorSet createGenerators() {
+        final SharedFunction.Gen[] slots = new SharedFunction.Gen[slotCount];
+        final Generator[] generators = new Generator[expressions.length];
+        SharedFunction.startCreating(slots);
+        try {
+            for (int i = 0; i < expressions.length; i++) {
+                if (expressions[i] != null) {
+                    generators[i] = expressions[i].createGenerator();
+                }
+            }
+        } finally {
+            SharedFunction.endCreating();
+        }
+
+        final SharedFunction.Gen[] shared = new SharedFunction.Gen[sharedCount];
+        int index = 0;
+        for (final SharedFunction.Gen gen : slots) {
+            if (gen != null) {
+                shared[index++] = gen;
+            }
+        }
+        return new GeneratorSet(generators, shared);
+    }
+
+    /**
+     * @param index The index of the expression.
+     * @return The parsed expression or null if the expression text was empty.
+     */
+    public Expression getExpression(final int index) {
+        return expressions[index];
+    }
+
+    public int size() {
+        return expressions.length;
+    }
+
+    /**
+     * @return The number of subtrees that are shared between expressions.
+     */
+    public int getSharedCount() {
+        return sharedCount;
+    }
+}
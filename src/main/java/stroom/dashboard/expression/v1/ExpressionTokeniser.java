@@ -18,330 +18,251 @@ package stroom.dashboard.expression.v1;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.NoSuchElementException;
 
 class ExpressionTokeniser {
     List<Token> tokenise(final String expression) {
-        List<Token> tokens = new ArrayList<>();
-
+        final List<Token> tokens = new ArrayList<>();
         if (expression != null) {
-            final char[] chars = expression.toCharArray();
-
-            // Tokenise
-            tokens.add(new Token(Token.Type.UNIDENTIFIED, chars, 0, chars.length - 1));
-
-            // Extract out string tokens.
-            tokens = extractStringTokens(tokens);
-
-            // Extract field references.
-            tokens = extractFieldTokens(tokens);
-
-            // Extract functions.
-            tokens = extractFunctionTokens(tokens);
-
-            // Extract simple tokens such as commas.
-            tokens = extractSimpleTokens(tokens);
-
-            // Extract whitespace.
-            tokens = extractWhitespaceTokens(tokens);
-
-            // Extract numeric tokens.
-            tokens = extractNumericTokens(tokens);
+            final TokenIterator iterator = iterator(expression);
+            while (iterator.hasNext()) {
+                tokens.add(iterator.next());
+            }
         }
-
         return tokens;
     }
 
-    private List<Token> extractStringTokens(final List<Token> input) {
-        final List<Token> output = new ArrayList<>();
-        for (final Token token : input) {
-            if (Token.Type.UNIDENTIFIED.equals(token.type)) {
-                extractStringToken(token, output);
-            } else {
-                output.add(token);
-            }
-        }
-        return output;
+    /**
+     * Get an iterator that tokenises the expression lazily as tokens are requested so that the tokens do not need to
+     * be held in a list.
+     */
+    TokenIterator iterator(final String expression) {
+        return new TokenIterator(expression.toCharArray());
     }
 
-    private void extractStringToken(final Token token, final List<Token> output) {
-        boolean inQuote = false;
-        int start = token.start;
-        for (int i = token.start; i <= token.end; i++) {
-            if (token.expression[i] == '\'') {
-                // If we are in a quote and get two quotes together then this is
-                // an escaped quote.
-                if (inQuote && i < token.end && token.expression[i + 1] == '\'') {
-                    i++;
-
-                } else {
-                    if (inQuote) {
-                        // Add the identified string.
-                        output.add(new Token(Token.Type.STRING, token.expression, start, i));
-                        start = i + 1;
-
-                    } else {
-                        if (i > start) {
-                            // Add any previous as yet unidentified content.
-                            output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, i - 1));
-                        }
-                        start = i;
-                    }
-
-                    inQuote = !inQuote;
-                }
-            }
+    /**
+     * Scans the expression once, producing the same tokens that would be found by extracting, in order, strings,
+     * field references, functions, simple tokens, whitespace and numbers from the content that remains unidentified
+     * after each previous step.
+     * <p>
+     * Strings are found first so a quote always ends the content that a field reference can be found in, and an
+     * unterminated string or field reference leaves the rest of that content to be tokenised as if it were not there.
+     */
+    static class TokenIterator implements Iterator<Token> {
+        private final char[] chars;
+
+        // The next tokens to return. At most two tokens are found at once, i.e. some unidentified content followed by
+        // another token.
+        private final Token[] pending = new Token[2];
+        private int pendingCount;
+        private int pendingIndex;
+
+        // The current position and the start of any unidentified content that has not yet been turned into a token.
+        private int pos;
+        private int contentStart;
+
+        // Once an unterminated string is found there can be no more strings.
+        private boolean findStrings = true;
+        // Field references are not looked for before this position as an unterminated field reference was found.
+        private int findFieldsFrom;
+
+        TokenIterator(final char[] chars) {
+            this.chars = chars;
         }
 
-        // Add any remaining as yet unidentified content.
-        if (token.end >= start) {
-            output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, token.end));
-        }
-    }
-
-    private List<Token> extractFieldTokens(final List<Token> input) {
-        final List<Token> output = new ArrayList<>();
-        for (final Token token : input) {
-            if (Token.Type.UNIDENTIFIED.equals(token.type)) {
-                extractFieldToken(token, output);
-            } else {
-                output.add(token);
-            }
-        }
-        return output;
-    }
-
-    private void extractFieldToken(final Token token, final List<Token> output) {
-        boolean inRef = false;
-        int start = token.start;
-        for (int i = token.start; i <= token.end; i++) {
-            if (!inRef && token.expression[i] == '$' && i < token.end && token.expression[i + 1] == '{') {
-                inRef = true;
-
-                if (i > start) {
-                    // Add any previous as yet unidentified content.
-                    output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, i - 1));
-                }
-
-                // Record where the field starts.
-                start = i;
-
-            } else if (inRef && token.expression[i] == '}') {
-                inRef = false;
-
-                // Add the field.
-                output.add(new Token(Token.Type.FIELD, token.expression, start, i));
-
-                // Record where the field ended.
-                start = i + 1;
+        @Override
+        public boolean hasNext() {
+            if (pendingIndex == pendingCount) {
+                pendingIndex = 0;
+                pendingCount = 0;
+                advance();
             }
+            return pendingIndex < pendingCount;
         }
 
-        // Add any remaining as yet unidentified content.
-        if (token.end >= start) {
-            output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, token.end));
-        }
-    }
-
-    private List<Token> extractFunctionTokens(final List<Token> input) {
-        final List<Token> output = new ArrayList<>();
-        for (final Token token : input) {
-            if (Token.Type.UNIDENTIFIED.equals(token.type)) {
-                extractFunctionToken(token, output);
-            } else {
-                output.add(token);
+        @Override
+        public Token next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            final Token token = pending[pendingIndex];
+            pending[pendingIndex++] = null;
+            return token;
         }
-        return output;
-    }
 
-    private void extractFunctionToken(final Token token, final List<Token> output) {
-        int start = token.start;
-        for (int i = token.start; i <= token.end; i++) {
-            if (token.expression[i] == '(') {
-                // Track back to find a function name if there is one.
-                int functionStart = i;
-                for (int j = i - 1; j >= token.start; j--) {
-                    if (Character.isLetter(token.expression[j])) {
-                        functionStart = j;
+        private void advance() {
+            while (pendingCount == 0 && pos < chars.length) {
+                final char c = chars[pos];
+
+                if (c == '\'' && findStrings) {
+                    // Any content before a quote is separate whether or not the string is terminated.
+                    addContent(pos);
+                    final int end = findStringEnd(pos + 1);
+                    if (end == -1) {
+                        findStrings = false;
+                        pos++;
                     } else {
-                        break;
+                        add(Token.Type.STRING, pos, end);
                     }
-                }
-
-                if (functionStart > start) {
-                    output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, functionStart - 1));
-                }
 
-                output.add(new Token(Token.Type.FUNCTION_START, token.expression, functionStart, i));
+                } else if (c == '$' && pos >= findFieldsFrom && pos + 1 < chars.length && chars[pos + 1] == '{') {
+                    // Any content before a field reference is separate whether or not the reference is terminated.
+                    addContent(pos);
+                    final int end = findFieldEnd(pos + 2);
+                    if (end < 0) {
+                        findFieldsFrom = -end;
+                        pos++;
+                    } else {
+                        add(Token.Type.FIELD, pos, end);
+                    }
 
-                // Move the start.
-                start = i + 1;
+                } else if (c == '(') {
+                    // Track back to find a function name if there is one.
+                    int functionStart = pos;
+                    while (functionStart > contentStart && Character.isLetter(chars[functionStart - 1])) {
+                        functionStart--;
+                    }
+                    addContent(functionStart);
+                    add(Token.Type.FUNCTION_START, functionStart, pos);
+
+                } else if (c == ')') {
+                    addContent(pos);
+                    add(Token.Type.FUNCTION_END, pos, pos);
+
+                } else if (Character.isWhitespace(c)) {
+                    addContent(pos);
+                    int end = pos;
+                    while (end + 1 < chars.length && Character.isWhitespace(chars[end + 1])) {
+                        end++;
+                    }
+                    add(Token.Type.WHITESPACE, pos, end);
 
-            } else if (token.expression[i] == ')') {
-                if (i > start) {
-                    // Add any previous as yet unidentified content.
-                    output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, i - 1));
+                } else {
+                    final Token.Type type = getSimpleTokenType(c);
+                    if (type != null) {
+                        addContent(pos);
+                        add(type, pos, pos + type.identifier.length - 1);
+                    } else {
+                        pos++;
+                    }
                 }
+            }
 
-                output.add(new Token(Token.Type.FUNCTION_END, token.expression, i, i));
-
-                // Move the start.
-                start = i + 1;
+            // Add any remaining as yet unidentified content.
+            if (pendingCount == 0) {
+                addContent(chars.length);
             }
         }
 
-        // Add any remaining as yet unidentified content.
-        if (token.end >= start) {
-            output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, token.end));
+        private Token.Type getSimpleTokenType(final char c) {
+            switch (c) {
+                case ',':
+                    return Token.Type.COMMA;
+                case '^':
+                    return Token.Type.ORDER;
+                case '/':
+                    return Token.Type.DIVISION;
+                case '*':
+                    return Token.Type.MULTIPLICATION;
+                case '%':
+                    return Token.Type.MODULUS;
+                case '+':
+                    return Token.Type.ADDITION;
+                case '-':
+                    return Token.Type.SUBTRACTION;
+                case '=':
+                    return Token.Type.EQUALS;
+                case '>':
+                    return isFollowedByEquals()
+                            ? Token.Type.GREATER_THAN_OR_EQUAL_TO
+                            : Token.Type.GREATER_THAN;
+                case '<':
+                    return isFollowedByEquals()
+                            ? Token.Type.LESS_THAN_OR_EQUAL_TO
+                            : Token.Type.LESS_THAN;
+                default:
+                    return null;
+            }
         }
-    }
 
-    private List<Token> extractSimpleTokens(final List<Token> input) {
-        final List<Token> output = new ArrayList<>();
-        for (final Token token : input) {
-            if (Token.Type.UNIDENTIFIED.equals(token.type)) {
-                extractSimpleToken(token, output);
-            } else {
-                output.add(token);
-            }
+        private boolean isFollowedByEquals() {
+            return pos + 1 < chars.length && chars[pos + 1] == '=';
         }
-        return output;
-    }
 
-    private void extractSimpleToken(final Token token, final List<Token> output) {
-        int start = token.start;
-        int i = start;
-        while (i <= token.end) {
-            for (final Token.Type type : Token.SIMPLE_TOKENS) {
-
-                boolean match = true;
-                for (int j = 0; j < type.identifier.length; j++) {
-                    if (token.expression[i + j] != type.identifier[j]) {
-                        match = false;
-                        break;
+        /**
+         * Find the closing quote of a string, skipping escaped quotes, or -1 if the string is not terminated.
+         */
+        private int findStringEnd(final int from) {
+            int i = from;
+            while (i < chars.length) {
+                if (chars[i] == '\'') {
+                    // Two quotes together are an escaped quote.
+                    if (i + 1 < chars.length && chars[i + 1] == '\'') {
+                        i++;
+                    } else {
+                        return i;
                     }
                 }
+                i++;
+            }
+            return -1;
+        }
 
-                if (match) {
-                    if (i > start) {
-                        // Add any previous as yet unidentified content.
-                        output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, i - 1));
-                    }
-
-                    output.add(new Token(type, token.expression, i, i + type.identifier.length - 1));
-
-                    // Move the start and our position
-                    start = i + type.identifier.length;
-                    if (type.identifier.length > 1) {
-                        // identifier is multi-char so advance position to stop us re-matching
-                        // a sub-set of it.
-                        i += type.identifier.length - 1;
-                    }
-                    // matched our token so break out
+        /**
+         * Find the closing brace of a field reference. If there is none before the next quote then return the negated
+         * position that the search stopped at.
+         */
+        private int findFieldEnd(final int from) {
+            int i = from;
+            while (i < chars.length) {
+                if (chars[i] == '}') {
+                    return i;
+                } else if (chars[i] == '\'' && findStrings) {
                     break;
                 }
+                i++;
             }
-            i++;
-        }
-
-        // Add any remaining as yet unidentified content.
-        if (token.end >= start) {
-            output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, token.end));
+            return -i;
         }
-    }
 
-    private List<Token> extractWhitespaceTokens(final List<Token> input) {
-        final List<Token> output = new ArrayList<>();
-        for (final Token token : input) {
-            if (Token.Type.UNIDENTIFIED.equals(token.type)) {
-                extractWhitespaceToken(token, output);
-            } else {
-                output.add(token);
+        /**
+         * Add a token for any unidentified content up to but excluding the supplied position.
+         */
+        private void addContent(final int end) {
+            if (end > contentStart) {
+                final Token.Type type = isNumber(contentStart, end)
+                        ? Token.Type.NUMBER
+                        : Token.Type.UNIDENTIFIED;
+                pending[pendingCount++] = new Token(type, chars, contentStart, end - 1);
             }
+            contentStart = end;
         }
-        return output;
-    }
-
-    private void extractWhitespaceToken(final Token token, final List<Token> output) {
-        int start = token.start;
-        boolean inWhitespace = false;
-        for (int i = token.start; i <= token.end; i++) {
-            if (Character.isWhitespace(token.expression[i])) {
-                if (!inWhitespace) {
-                    inWhitespace = true;
-                    if (i > start) {
-                        // Add any previous as yet unidentified content.
-                        output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, i - 1));
-                    }
 
-                    // Record where the whitespace starts.
-                    start = i;
-                }
-
-            } else {
-                if (inWhitespace) {
-                    // Add the whitespace.
-                    output.add(new Token(Token.Type.WHITESPACE, token.expression, start, i - 1));
-
-                    // Record where the whitespace ended.
-                    start = i;
-                    inWhitespace = false;
-                }
-            }
+        private void add(final Token.Type type, final int start, final int end) {
+            pending[pendingCount++] = new Token(type, chars, start, end);
+            pos = end + 1;
+            contentStart = pos;
         }
 
-        // Add any remaining as yet unidentified content or whitespace.
-        if (token.end >= start) {
-            if (inWhitespace) {
-                output.add(new Token(Token.Type.WHITESPACE, token.expression, start, token.end));
-            } else {
-                output.add(new Token(Token.Type.UNIDENTIFIED, token.expression, start, token.end));
+        private boolean isNumber(final int start, final int end) {
+            // Avoid the cost of an exception for content that can't be a number.
+            final char first = chars[start];
+            if (first != '.' && !Character.isDigit(first)) {
+                return false;
             }
-        }
-    }
 
-    private List<Token> extractNumericTokens(final List<Token> input) {
-        final List<Token> output = new ArrayList<>();
-        for (final Token token : input) {
-            if (Token.Type.UNIDENTIFIED.equals(token.type)) {
-                try {
-                    new BigDecimal(token.toString());
-                    output.add(new Token(Token.Type.NUMBER, token.expression, token.start, token.end));
-                } catch (final NumberFormatException e) {
-                    output.add(token);
-                }
-            } else {
-                output.add(token);
+            try {
+                new BigDecimal(chars, start, end - start);
+                return true;
+            } catch (final NumberFormatException e) {
+                return false;
             }
         }
-        return output;
     }
 
     static class Token implements Param {
-        // refuses to compile if I create the reverse comparator in one step, who knows why
-        private static Comparator<Type> IDENTIFIER_LENGTH_COMPARATOR = Comparator.comparing(t -> t.identifier.length);
-        private static Comparator<Type> IDENTIFIER_LENGTH_COMPARATOR_REVERSED = IDENTIFIER_LENGTH_COMPARATOR.reversed();
-
-        // array of simple tokens reverse sorted on identifier length
-        static final Type[] SIMPLE_TOKENS = Stream.of(
-                Type.COMMA,
-                Type.ORDER,
-                Type.DIVISION,
-                Type.MULTIPLICATION,
-                Type.MODULUS,
-                Type.ADDITION,
-                Type.SUBTRACTION,
-                Type.EQUALS,
-                Type.GREATER_THAN,
-                Type.GREATER_THAN_OR_EQUAL_TO,
-                Type.LESS_THAN,
-                Type.LESS_THAN_OR_EQUAL_TO)
-                .sorted(IDENTIFIER_LENGTH_COMPARATOR_REVERSED)
-                .toArray(Type[]::new);
-
         private final Type type;
         private final char[] expression;
         private final int start;
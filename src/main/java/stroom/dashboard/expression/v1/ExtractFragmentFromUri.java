@@ -16,12 +16,6 @@
 
 package stroom.dashboard.expression.v1;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.net.URI;
-import java.net.URISyntaxException;
-
 class ExtractFragmentFromUri extends ExtractionFunction {
     static final String NAME = "extractFragmentFromUri";
     private static final Extractor EXTRACTOR = new ExtractorImpl();
@@ -38,17 +32,9 @@ class ExtractFragmentFromUri extends ExtractionFunction {
     static class ExtractorImpl implements Extractor {
         private static final long serialVersionUID = -5893918049538006730L;
 
-        private static final Logger LOGGER = LoggerFactory.getLogger(ExtractorImpl.class);
-
         @Override
         public String extract(final String value) {
-            try {
-                final URI uri = new URI(value);
-                return uri.getFragment();
-            } catch (final URISyntaxException | RuntimeException e) {
-                LOGGER.debug(e.getMessage(), e);
-            }
-            return null;
+            return UriParts.parse(value).getFragment();
         }
     }
 }
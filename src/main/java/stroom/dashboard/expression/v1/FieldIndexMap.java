@@ -65,6 +65,10 @@ public class FieldIndexMap {
         return currentIndex;
     }
 
+    boolean isAutoCreate() {
+        return autoCreate;
+    }
+
     public int size() {
         return fieldToPos.size();
     }
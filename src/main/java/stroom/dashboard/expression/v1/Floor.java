@@ -43,7 +43,12 @@ class Floor extends AbstractRoundingFunction {
                 return ValNull.INSTANCE;
             }
 
-            return ValDouble.create(Math.floor(val));
+            return ValDouble.create(calcDouble(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            return Math.floor(value);
         }
     }
 
@@ -63,7 +68,12 @@ class Floor extends AbstractRoundingFunction {
                 return ValNull.INSTANCE;
             }
 
-            return ValDouble.create(Math.floor(val * multiplier) / multiplier);
+            return ValDouble.create(calcDouble(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            return Math.floor(value * multiplier) / multiplier;
         }
     }
 }
@@ -16,8 +16,6 @@
 
 package stroom.dashboard.expression.v1;
 
-import java.time.LocalDateTime;
-
 class FloorDay extends RoundDate {
     static final String NAME = "floorDay";
     private static final Calc CALC = new Calc();
@@ -35,8 +33,8 @@ class FloorDay extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
-            return dateTime.toLocalDate().atStartOfDay();
+        public long calcLong(final long value) {
+            return floor(value, MILLIS_PER_DAY);
         }
     }
 }
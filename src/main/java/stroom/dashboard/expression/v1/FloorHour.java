@@ -16,9 +16,6 @@
 
 package stroom.dashboard.expression.v1;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-
 class FloorHour extends RoundDate {
     static final String NAME = "floorHour";
     private static final Calc CALC = new Calc();
@@ -36,8 +33,8 @@ class FloorHour extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
-            return dateTime.truncatedTo(ChronoUnit.HOURS);
+        public long calcLong(final long value) {
+            return floor(value, MILLIS_PER_HOUR);
         }
     }
 }
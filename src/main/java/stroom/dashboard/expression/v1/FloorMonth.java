@@ -35,7 +35,15 @@ class FloorMonth extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
+        public long calcLong(final long value) {
+            final int month = MonthTable.monthIndex(value);
+            if (month == MonthTable.NOT_IN_TABLE) {
+                return adjustDateTime(value, this::adjust);
+            }
+            return MonthTable.monthStart(month);
+        }
+
+        private LocalDateTime adjust(final LocalDateTime dateTime) {
             return dateTime.toLocalDate().withDayOfMonth(1).atStartOfDay();
         }
     }
@@ -35,7 +35,17 @@ class FloorYear extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
+        public long calcLong(final long value) {
+            final int month = MonthTable.monthIndex(value);
+            if (month == MonthTable.NOT_IN_TABLE) {
+                return adjustDateTime(value, this::adjust);
+            }
+
+            final int year = MonthTable.yearIndex(month);
+            return MonthTable.monthStart(year);
+        }
+
+        private LocalDateTime adjust(final LocalDateTime dateTime) {
             return dateTime.toLocalDate().withDayOfYear(1).atStartOfDay();
         }
     }
@@ -27,6 +27,9 @@ class FormatDate extends AbstractFunction implements Serializable {
     private static final long serialVersionUID = -305845496003936297L;
     private String pattern = DateUtil.DEFAULT_PATTERN;
     private String timeZone;
+    // Resolved once from the pattern and time zone when the params are set.
+    private transient DateTimeFormatter formatter;
+    private transient ZoneId zoneId;
 
     private Generator gen;
     private Function function;
@@ -40,8 +43,8 @@ class FormatDate extends AbstractFunction implements Serializable {
     public void setParams(final Param[] params) throws ParseException {
         super.setParams(params);
 
-        DateTimeFormatter formatter = DateUtil.DEFAULT_FORMATTER;
-        ZoneId zoneId = ZoneOffset.UTC;
+        formatter = DateUtil.DEFAULT_FORMATTER;
+        zoneId = ZoneOffset.UTC;
 
         if (params.length >= 2) {
             pattern = ParamParseUtil.parseStringParam(params, 1, name);
@@ -75,7 +78,7 @@ class FormatDate extends AbstractFunction implements Serializable {
         }
 
         final Generator childGenerator = function.createGenerator();
-        return new Gen(childGenerator, pattern, timeZone);
+        return new Gen(childGenerator, pattern, timeZone, formatter, zoneId);
     }
 
     @Override
@@ -88,11 +91,19 @@ class FormatDate extends AbstractFunction implements Serializable {
 
         private final String pattern;
         private final String timeZone;
-
-        Gen(final Generator childGenerator, final String pattern, final String timeZone) {
+        private transient DateTimeFormatter formatter;
+        private transient ZoneId zoneId;
+
+        Gen(final Generator childGenerator,
+            final String pattern,
+            final String timeZone,
+            final DateTimeFormatter formatter,
+            final ZoneId zoneId) {
             super(childGenerator);
             this.pattern = pattern;
             this.timeZone = timeZone;
+            this.formatter = formatter;
+            this.zoneId = zoneId;
         }
 
         @Override
@@ -112,7 +123,13 @@ class FormatDate extends AbstractFunction implements Serializable {
             }
 
             try {
-                return ValString.create(FormatterCache.format(millis, pattern, timeZone));
+                if (formatter == null || zoneId == null) {
+                    // The formatter isn't serialised so resolve it again if this generator or its function has been
+                    // deserialised.
+                    formatter = FormatterCache.getFormatter(pattern);
+                    zoneId = FormatterCache.getZoneId(timeZone);
+                }
+                return ValString.create(DateUtil.format(millis, formatter, zoneId));
             } catch (final RuntimeException e) {
                 return ValErr.create(e.getMessage());
             }
@@ -7,52 +7,41 @@ import java.text.ParseException;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
-final class FormatterCache {
+/**
+ * Caches date time formatters and time zones for the date functions, e.g. parseDate() and formatDate(). The caches
+ * can be used by every search thread at once without them blocking each other.
+ */
+public final class FormatterCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(FormatterCache.class);
 
     // Create cache
-    private static final int MAX_ENTRIES = 1000;
-
-    private static final Map<String, CachedFormatter> FORMATTER_CACHE = Collections.synchronizedMap(new LinkedHashMap<String, CachedFormatter>(MAX_ENTRIES + 1, .75F, true) {
-        // This method is called just after a new entry has been added
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            if (size() > MAX_ENTRIES) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Evicting old formatter: " + eldest.getKey());
-                }
-                return true;
-            }
-            return false;
-        }
-    });
-
-    private static final Map<String, CachedZoneId> ZONEID_CACHE = Collections.synchronizedMap(new LinkedHashMap<String, CachedZoneId>(MAX_ENTRIES + 1, .75F, true) {
-        // This method is called just after a new entry has been added
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            if (size() > MAX_ENTRIES) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Evicting old zone id: " + eldest.getKey());
-                }
-                return true;
-            }
-            return false;
-        }
-    });
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final BoundedCache<String, CachedFormatter> FORMATTER_CACHE =
+            new BoundedCache<>("formatter", DEFAULT_MAX_ENTRIES);
+
+    private static final BoundedCache<String, CachedZoneId> ZONEID_CACHE =
+            new BoundedCache<>("zone id", DEFAULT_MAX_ENTRIES);
 
     private FormatterCache() {
         // Utility
     }
 
-    static long parse(final String value, final String pattern, final String timeZone) {
-        return DateUtil.parse(value, getFormatter(pattern), getZoneId(timeZone));
+    /**
+     * @param maxEntries The maximum number of formatters and, separately, time zones to keep.
+     */
+    public static void setMaxEntries(final int maxEntries) {
+        FORMATTER_CACHE.setMaxEntries(maxEntries);
+        ZONEID_CACHE.setMaxEntries(maxEntries);
+    }
+
+    public static CacheStats getFormatterStats() {
+        return FORMATTER_CACHE.getStats();
     }
 
-    static String format(final Long value, final String pattern, final String timeZone) {
-        return DateUtil.format(value, getFormatter(pattern), getZoneId(timeZone));
+    public static CacheStats getZoneIdStats() {
+        return ZONEID_CACHE.getStats();
     }
 
     static DateTimeFormatter getFormatter(final String pattern) {
@@ -85,7 +74,7 @@ final class FormatterCache {
         // Get cached time zone.
         final CachedZoneId cachedZoneId = ZONEID_CACHE.computeIfAbsent(timeZone, k -> {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Compiling formatter: " + k);
+                LOGGER.debug("Compiling zone id: " + k);
             }
             try {
                 return new CachedZoneId(DateUtil.getTimeZone(k));
@@ -29,6 +29,8 @@ public class FunctionFactory {
         add(Min.class, Min.NAME);
         add(Sum.class, Sum.NAME);
         add(Average.class, Average.NAME, Average.ALIAS);
+        add(Median.class, Median.NAME);
+        add(Percentile.class, Percentile.NAME);
 
         add(Round.class, Round.NAME);
         add(RoundYear.class, RoundYear.NAME);
@@ -97,6 +99,7 @@ public class FunctionFactory {
         add(Count.class, Count.NAME);
         add(CountGroups.class, CountGroups.NAME);
         add(CountUnique.class, CountUnique.NAME);
+        add(CountUniqueApprox.class, CountUniqueApprox.NAME);
 
         add(Power.class, Power.NAME, Power.ALIAS);
         add(Divide.class, Divide.NAME, Divide.ALIAS);
@@ -124,6 +127,11 @@ public class FunctionFactory {
         add(Top.class, Top.NAME);
         add(Bottom.class, Bottom.NAME);
 
+        // Value selectors.
+        add(NthValue.class, NthValue.NAME);
+        add(TopValues.class, TopValues.NAME);
+        add(BottomValues.class, BottomValues.NAME);
+
         // Echo statically mapped values
         add(CurrentUser.class, CurrentUser.NAME);
         add(QueryParam.class, QueryParam.NAME);
@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 public interface Generator extends Serializable, Comparable<Generator> {
@@ -42,6 +43,83 @@ public interface Generator extends Serializable, Comparable<Generator> {
      */
     Val eval();
 
+    /**
+     * Evaluate this generator as a primitive double so that arithmetic can be performed without creating
+     * intermediate values. If the result would not be a number, e.g. it is null, an error or a string, then
+     * NaN is returned and the caller must use eval() to get the actual result. NaN may also be returned for a
+     * result that really is NaN so callers should treat it as a request to use eval() rather than as a value.
+     *
+     * @return The result of applying this function to the supplied values or NaN if eval() must be used.
+     */
+    default double evalDouble() {
+        final Val val = eval();
+        if (val instanceof ValNumber) {
+            return ((ValNumber) val).doubleValue();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Evaluate this generator as a primitive long, e.g. for date rounding. If the result would not be a number
+     * then Long.MIN_VALUE is returned and the caller must use eval() to get the actual result.
+     *
+     * @return The result of applying this function to the supplied values or Long.MIN_VALUE if eval() must be
+     * used.
+     */
+    default long evalLong() {
+        final Val val = eval();
+        if (val instanceof ValNumber) {
+            return ((ValNumber) val).longValue();
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Create a key for the current result of this generator so that generators can be sorted by comparing keys
+     * created once for each generator rather than evaluating both generators for every comparison.
+     *
+     * @return A key that orders the result of eval() in the same way as compareTo().
+     */
+    default SortKey sortKey() {
+        return SortKey.create(eval());
+    }
+
+    /**
+     * Equivalent of calling set() for each selected row of the block in turn. Generators that can process a whole
+     * block at once, e.g. aggregates of a field, override this so that a tight loop replaces a call through every
+     * node of the tree for each row.
+     *
+     * @param block The rows to pick data from.
+     */
+    default void setBatch(final ValBlock block) {
+        for (int i = 0; i < block.size(); i++) {
+            set(block.row(i));
+        }
+    }
+
+    /**
+     * Equivalent of calling set() and then eval() for each selected row of the block in turn. The result for
+     * each row is written as a primitive to doubles, using NaN in the same way as evalDouble(), and as a value
+     * to vals. Where the result is a number vals may instead be set to null to avoid creating a value, in which
+     * case the result is a double with the value written to doubles.
+     *
+     * @param block   The rows to pick data from.
+     * @param doubles The primitive result for each selected row.
+     * @param vals    The result for each selected row or null if it is the double held in doubles.
+     */
+    default void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+        for (int i = 0; i < block.size(); i++) {
+            set(block.row(i));
+            final Val val = eval();
+            vals[i] = val;
+            if (val instanceof ValNumber) {
+                doubles[i] = ((ValNumber) val).doubleValue();
+            } else {
+                doubles[i] = Double.NaN;
+            }
+        }
+    }
+
     /**
      * Merge the values from another generator into this generator, e.g. for a
      * min generator take the min value from the supplied min generator and
@@ -50,4 +128,36 @@ public interface Generator extends Serializable, Comparable<Generator> {
      * @param generator The generator to merge with this one.
      */
     void merge(Generator generator);
+
+    /**
+     * Write the state of this generator and its children in the compact form described by
+     * {@link GeneratorOutput}. Only state is written so the generator must be read back into a generator
+     * created from the same expression. Generators that don't extend the generators of this package must override
+     * this to take part in writing state.
+     *
+     * @param output The output to write to.
+     */
+    default void write(GeneratorOutput output) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support writing state");
+    }
+
+    /**
+     * Replace the state of this generator and its children with state written by write().
+     *
+     * @param input The input to read from.
+     */
+    default void read(GeneratorInput input) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support reading state");
+    }
+
+    /**
+     * Estimate the memory held by this generator and its children so that a query can be kept within a memory
+     * budget. Generators that collect values keep a running total as values are added so this is cheap enough to
+     * call after every row.
+     *
+     * @return The approximate number of bytes held by this generator and its children.
+     */
+    default long estimatedSizeInBytes() {
+        return SizeEstimates.GENERATOR;
+    }
 }
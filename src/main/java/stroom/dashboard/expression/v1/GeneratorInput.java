@@ -0,0 +1,256 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Reads generator state written by {@link GeneratorOutput}, see {@link Generator#read(GeneratorInput)}.
+ * <p>
+ * State may come from another node so objects written with Java serialisation are only read if every class they
+ * contain is allowed. Classes from this package, strings, boxed primitives and primitive arrays are always allowed
+ * and other classes, e.g. the keys of an application's own grouping, must be allowed explicitly.
+ */
+public final class GeneratorInput {
+    private static final String PACKAGE = GeneratorInput.class.getPackage().getName() + ".";
+    private static final Set<String> ALLOWED_CLASSES = new HashSet<>(Arrays.asList(
+            String.class.getName(),
+            Number.class.getName(),
+            Boolean.class.getName(),
+            Enum.class.getName(),
+            Integer.class.getName(),
+            Long.class.getName(),
+            Double.class.getName()));
+
+    // Arrays longer than this are grown as their contents are read rather than allocated up front, so that a corrupt
+    // length fails when the input runs out instead of allocating up to 2GB first.
+    private static final int MAX_INITIAL_LENGTH = 64 * 1024;
+
+    private final DataInput input;
+    private final Predicate<String> allowedClasses;
+    private final List<String> dictionary = new ArrayList<>();
+
+    public GeneratorInput(final DataInput input) throws IOException {
+        this(input, className -> false);
+    }
+
+    /**
+     * @param input          The input to read from.
+     * @param allowedClasses Tests the names of classes, other than those that are always allowed, that may be
+     *                       read from objects written with Java serialisation.
+     */
+    public GeneratorInput(final DataInput input, final Predicate<String> allowedClasses) throws IOException {
+        this.input = input;
+        this.allowedClasses = allowedClasses;
+        final int version = readSize();
+        if (version != GeneratorOutput.VERSION) {
+            throw new StreamCorruptedException("Unsupported generator state version " + version);
+        }
+    }
+
+    public int readSize() throws IOException {
+        final long size = readUnsigned();
+        if (size > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid size " + size);
+        }
+        return (int) size;
+    }
+
+    public int readInt() throws IOException {
+        return (int) readLong();
+    }
+
+    public long readLong() throws IOException {
+        final long value = readUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public double readDouble() throws IOException {
+        return input.readDouble();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return input.readByte() != 0;
+    }
+
+    public byte[] readBytes() throws IOException {
+        final int length = readSize();
+        byte[] bytes = new byte[Math.min(length, MAX_INITIAL_LENGTH)];
+        int read = 0;
+        try {
+            while (true) {
+                input.readFully(bytes, read, bytes.length - read);
+                read = bytes.length;
+                if (read == length) {
+                    return bytes;
+                }
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, read * 2L));
+            }
+        } catch (final EOFException e) {
+            final StreamCorruptedException corrupted = new StreamCorruptedException("Byte array length " + length +
+                    " is longer than the remaining input");
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+
+    public String readString() throws IOException {
+        final int code = readSize();
+        if (code == GeneratorOutput.STRING_NULL) {
+            return null;
+        } else if (code == GeneratorOutput.STRING_LITERAL) {
+            final String string = new String(readBytes(), StandardCharsets.UTF_8);
+            if (dictionary.size() < GeneratorOutput.MAX_DICTIONARY_SIZE) {
+                dictionary.add(string);
+            }
+            return string;
+        }
+
+        final int index = code - GeneratorOutput.STRING_REFERENCE;
+        if (index >= dictionary.size()) {
+            throw new StreamCorruptedException("Unknown string reference " + index);
+        }
+        return dictionary.get(index);
+    }
+
+    public Val readVal() throws IOException {
+        final int tag = input.readByte();
+        switch (tag) {
+            case GeneratorOutput.TAG_NONE:
+                return null;
+            case GeneratorOutput.TAG_NULL:
+                return ValNull.INSTANCE;
+            case GeneratorOutput.TAG_FALSE:
+                return ValBoolean.FALSE;
+            case GeneratorOutput.TAG_TRUE:
+                return ValBoolean.TRUE;
+            case GeneratorOutput.TAG_INTEGER:
+                return ValInteger.create(readInt());
+            case GeneratorOutput.TAG_LONG:
+                return ValLong.create(readLong());
+            case GeneratorOutput.TAG_DOUBLE:
+                return ValDouble.create(readDouble());
+            case GeneratorOutput.TAG_STRING:
+                return ValString.create(readString());
+            case GeneratorOutput.TAG_ERR:
+                return ValErr.create(readString());
+            case GeneratorOutput.TAG_OBJECT:
+                return (Val) readObject();
+            default:
+                throw new StreamCorruptedException("Unknown value type " + tag);
+        }
+    }
+
+    /**
+     * Read the key of a child group written by {@link GeneratorOutput#writeKey(Key)}.
+     */
+    public Key readKey() throws IOException {
+        final int tag = input.readByte();
+        if (tag == GeneratorOutput.KEY_GROUP) {
+            final int length = readSize();
+            Val[] values = new Val[Math.min(length, MAX_INITIAL_LENGTH)];
+            for (int i = 0; i < length; i++) {
+                if (i == values.length) {
+                    values = Arrays.copyOf(values, (int) Math.min(length, i * 2L));
+                }
+                values[i] = readVal();
+            }
+            return new GroupKey(values, GroupKey.hash(values));
+        } else if (tag == GeneratorOutput.KEY_OBJECT) {
+            return (Key) readObject();
+        }
+        throw new StreamCorruptedException("Unknown key type " + tag);
+    }
+
+    /**
+     * Read an object written with Java serialisation. An {@link InvalidClassException} is thrown if the object
+     * contains a class that is not allowed.
+     */
+    public Object readObject() throws IOException {
+        try (final ObjectInputStream objectInputStream = new RestrictedObjectInputStream(
+                new ByteArrayInputStream(readBytes()))) {
+            return objectInputStream.readObject();
+        } catch (final ClassNotFoundException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private boolean isAllowed(final String className) {
+        // Check the component type of arrays.
+        int start = 0;
+        while (start < className.length() && className.charAt(start) == '[') {
+            start++;
+        }
+        if (start > 0) {
+            if (className.charAt(start) != 'L') {
+                // An array of primitives.
+                return true;
+            }
+            return isAllowed(className.substring(start + 1, className.length() - 1));
+        }
+
+        return className.startsWith(PACKAGE) ||
+                ALLOWED_CLASSES.contains(className) ||
+                allowedClasses.test(className);
+    }
+
+    private long readUnsigned() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length number");
+    }
+
+    private class RestrictedObjectInputStream extends ObjectInputStream {
+        RestrictedObjectInputStream(final InputStream inputStream) throws IOException {
+            super(inputStream);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class is not allowed in generator state");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes are not allowed in generator state");
+        }
+    }
+}
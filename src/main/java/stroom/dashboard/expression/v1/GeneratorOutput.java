@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the state of generators in a compact binary form that can be read back with {@link GeneratorInput}, see
+ * {@link Generator#write(GeneratorOutput)}. The output starts with a format version. Integers are written as
+ * variable length numbers, values are written with a single byte type tag and strings are dictionary coded so
+ * that a string that has already been written to the same output is written as a reference to its first use.
+ * <p>
+ * The structure of a generator tree is not written as it is recreated from the expression before state is read
+ * into it. Many generators can be written to the same output to share the dictionary.
+ */
+public final class GeneratorOutput {
+    static final int VERSION = 2;
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_LITERAL = 1;
+    static final int STRING_REFERENCE = 2;
+
+    static final int TAG_NONE = 0;
+    static final int TAG_NULL = 1;
+    static final int TAG_FALSE = 2;
+    static final int TAG_TRUE = 3;
+    static final int TAG_INTEGER = 4;
+    static final int TAG_LONG = 5;
+    static final int TAG_DOUBLE = 6;
+    static final int TAG_STRING = 7;
+    static final int TAG_ERR = 8;
+    static final int TAG_OBJECT = 9;
+
+    static final int KEY_GROUP = 0;
+    static final int KEY_OBJECT = 1;
+
+    private final DataOutput output;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    public GeneratorOutput(final DataOutput output) throws IOException {
+        this.output = output;
+        writeSize(VERSION);
+    }
+
+    /**
+     * Write a non negative number such as the size of a collection.
+     */
+    public void writeSize(final int size) throws IOException {
+        writeUnsigned(size & 0xffffffffL);
+    }
+
+    public void writeInt(final int value) throws IOException {
+        writeLong(value);
+    }
+
+    public void writeLong(final long value) throws IOException {
+        // Zig zag encode so that small negative numbers are also short.
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    public void writeDouble(final double value) throws IOException {
+        output.writeDouble(value);
+    }
+
+    public void writeBoolean(final boolean value) throws IOException {
+        output.writeByte(value ? 1 : 0);
+    }
+
+    public void writeBytes(final byte[] bytes) throws IOException {
+        writeSize(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Write a string, which may be null. A string that is already in the dictionary is written as its index.
+     */
+    public void writeString(final String string) throws IOException {
+        if (string == null) {
+            writeSize(STRING_NULL);
+            return;
+        }
+
+        final Integer index = dictionary.get(string);
+        if (index != null) {
+            writeSize(STRING_REFERENCE + index);
+        } else {
+            writeSize(STRING_LITERAL);
+            writeBytes(string.getBytes(StandardCharsets.UTF_8));
+            if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                dictionary.put(string, dictionary.size());
+            }
+        }
+    }
+
+    /**
+     * Write a value, which may be null.
+     */
+    public void writeVal(final Val val) throws IOException {
+        if (val == null) {
+            output.writeByte(TAG_NONE);
+        } else if (val instanceof ValNull) {
+            output.writeByte(TAG_NULL);
+        } else if (val instanceof ValBoolean) {
+            output.writeByte(val.toBoolean() ? TAG_TRUE : TAG_FALSE);
+        } else if (val instanceof ValInteger) {
+            output.writeByte(TAG_INTEGER);
+            writeInt(val.toInteger());
+        } else if (val instanceof ValLong) {
+            output.writeByte(TAG_LONG);
+            writeLong(val.toLong());
+        } else if (val instanceof ValDouble) {
+            output.writeByte(TAG_DOUBLE);
+            writeDouble(val.toDouble());
+        } else if (val instanceof ValString) {
+            output.writeByte(TAG_STRING);
+            writeString(val.toString());
+        } else if (val instanceof ValErr) {
+            output.writeByte(TAG_ERR);
+            writeString(((ValErr) val).getMessage());
+        } else {
+            output.writeByte(TAG_OBJECT);
+            writeObject(val);
+        }
+    }
+
+    /**
+     * Write the key of a child group. Keys of a {@link GroupingTable} are written as their values and any other
+     * key is written using Java serialisation.
+     */
+    public void writeKey(final Key key) throws IOException {
+        if (key instanceof GroupKey) {
+            final GroupKey groupKey = (GroupKey) key;
+            output.writeByte(KEY_GROUP);
+            writeSize(groupKey.size());
+            for (int i = 0; i < groupKey.size(); i++) {
+                writeVal(groupKey.get(i));
+            }
+        } else {
+            output.writeByte(KEY_OBJECT);
+            writeObject(key);
+        }
+    }
+
+    /**
+     * Write an object that has no compact form using Java serialisation. The object can only be read back if its
+     * classes are allowed by the {@link GeneratorInput}.
+     */
+    public void writeObject(final Serializable object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(object);
+        }
+        writeBytes(bytes.toByteArray());
+    }
+
+    private void writeUnsigned(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * The generators for each expression of an {@link ExpressionSet}, e.g. the cells of one row of a table. Subtrees
+ * that are common to several of the expressions are shared between the generators so values must be supplied with
+ * {@link #set(Val[])}, which evaluates each shared subtree once, rather than by setting each generator directly.
+ */
+public final class GeneratorSet implements Serializable {
+    private static final long serialVersionUID = 6047466263617489310L;
+
+    private final Generator[] generators;
+    private final SharedFunction.Gen[] shared;
+
+    GeneratorSet(final Generator[] generators, final SharedFunction.Gen[] shared) {
+        this.generators = generators;
+        this.shared = shared;
+    }
+
+    /**
+     * Set values on every generator in the set.
+     *
+     * @param values The current data values to pick data from.
+     */
+    public void set(final Val[] values) {
+        for (final SharedFunction.Gen gen : shared) {
+            gen.setShared(values);
+        }
+        try {
+            for (final Generator generator : generators) {
+                if (generator != null) {
+                    generator.set(values);
+                }
+            }
+        } finally {
+            clearShared();
+        }
+    }
+
+    /**
+     * Set a block of rows on every generator in the set, see {@link Generator#setBatch(ValBlock)}. Each shared
+     * subtree is evaluated once for the block.
+     *
+     * @param block The rows to pick data from.
+     */
+    public void setBatch(final ValBlock block) {
+        for (final SharedFunction.Gen gen : shared) {
+            gen.setSharedBatch(block);
+        }
+        try {
+            for (final Generator generator : generators) {
+                if (generator != null) {
+                    generator.setBatch(block);
+                }
+            }
+        } finally {
+            clearShared();
+        }
+    }
+
+    private void clearShared() {
+        for (final SharedFunction.Gen gen : shared) {
+            gen.clearShared();
+        }
+    }
+
+    /**
+     * Merge each generator with the generator at the same position in another set created by the same expression
+     * set.
+     *
+     * @param generatorSet The generator set to merge with this one.
+     */
+    public void merge(final GeneratorSet generatorSet) {
+        for (int i = 0; i < generators.length; i++) {
+            if (generators[i] != null) {
+                generators[i].merge(generatorSet.generators[i]);
+            }
+        }
+    }
+
+    /**
+     * Write the state of each generator, see {@link Generator#write(GeneratorOutput)}.
+     *
+     * @param output The output to write to.
+     */
+    public void write(final GeneratorOutput output) throws IOException {
+        for (final Generator generator : generators) {
+            if (generator != null) {
+                generator.write(output);
+            }
+        }
+    }
+
+    /**
+     * Replace the state of each generator with state written by write() from a set created by the same expression
+     * set.
+     *
+     * @param input The input to read from.
+     */
+    public void read(final GeneratorInput input) throws IOException {
+        for (final Generator generator : generators) {
+            if (generator != null) {
+                generator.read(input);
+            }
+        }
+    }
+
+    /**
+     * @param index The index of the expression in the expression set.
+     * @return The generator for the expression.
+     */
+    public Generator get(final int index) {
+        return generators[index];
+    }
+
+    public int size() {
+        return generators.length;
+    }
+
+    /**
+     * Estimate the memory held by the generators, counting subtrees that are shared between them once, see
+     * {@link Generator#estimatedSizeInBytes()}.
+     *
+     * @return The approximate number of bytes held by the generators.
+     */
+    public long estimatedSizeInBytes() {
+        long size = SizeEstimates.array(generators.length, SizeEstimates.REFERENCE);
+        for (final SharedFunction.Gen gen : shared) {
+            size += gen.estimatedSharedSizeInBytes();
+        }
+        for (final Generator generator : generators) {
+            if (generator != null) {
+                size += generator.estimatedSizeInBytes();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.util.Arrays;
+
+/**
+ * The values of the key expressions of a group in a {@link GroupingTable} along with their hash.
+ */
+public final class GroupKey implements Key {
+    private static final long serialVersionUID = 2718061624587447193L;
+
+    private final Val[] values;
+    private final int hash;
+
+    GroupKey(final Val[] values, final int hash) {
+        this.values = values;
+        this.hash = hash;
+    }
+
+    /**
+     * Hash key values without the boxing that some Val hash codes use.
+     *
+     * @param values The values of each key expression for a row.
+     * @return The hash of the values.
+     */
+    static int hash(final Val[] values) {
+        int hash = 1;
+        for (final Val val : values) {
+            final int valHash;
+            if (val instanceof ValString) {
+                final String string = val.toString();
+                valHash = string == null
+                        ? 0
+                        : string.hashCode();
+            } else if (val instanceof ValDouble) {
+                valHash = Double.hashCode(((ValDouble) val).doubleValue());
+            } else if (val instanceof ValNumber) {
+                valHash = Long.hashCode(((ValNumber) val).longValue());
+            } else {
+                valHash = val.hashCode();
+            }
+            hash = 31 * hash + valHash;
+        }
+
+        // Spread the bits so that similar keys, e.g. consecutive numbers, don't fill neighbouring slots.
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    Val[] getValues() {
+        return values;
+    }
+
+    @Override
+    public long estimatedSizeInBytes() {
+        long size = SizeEstimates.align(SizeEstimates.OBJECT_HEADER + SizeEstimates.REFERENCE + 4) +
+                SizeEstimates.array(values.length, SizeEstimates.REFERENCE);
+        for (final Val val : values) {
+            size += SizeEstimates.val(val);
+        }
+        return size;
+    }
+
+    boolean matches(final Val[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (!this.values[i].equals(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param index The index of the key expression.
+     * @return The value of the key expression for this group.
+     */
+    public Val get(final int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final GroupKey groupKey = (GroupKey) o;
+        return hash == groupKey.hash && Arrays.equals(values, groupKey.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
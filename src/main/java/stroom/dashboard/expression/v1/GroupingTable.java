@@ -0,0 +1,268 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.util.Arrays;
+
+/**
+ * Groups rows by the values of key expressions and aggregates value expressions for each group, e.g. for a table
+ * grouped by one or more columns. Groups are found with an open addressing hash table that holds the hash of each
+ * key alongside the index of its group, so a row costs one evaluation of the key expressions and a probe of two
+ * primitive arrays, with the key values only compared when the hashes match.
+ * <p>
+ * A table is not thread safe. Tables created from the same expression sets, e.g. by different threads, can be
+ * combined with {@link #merge(GroupingTable)}.
+ */
+public final class GroupingTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ExpressionSet keyExpressions;
+    private final ExpressionSet valueExpressions;
+    private final GeneratorSet keyGenerators;
+    private final Val[] keyValues;
+
+    // For each slot the hash of the key and the index of the group plus one, with zero for an empty slot.
+    private int[] slotHashes;
+    private int[] slotGroups;
+    private int mask;
+
+    private GroupKey[] keys;
+    private GeneratorSet[] groups;
+    private int size;
+
+    // The estimated size of the keys and generators of the groups, adjusted as rows are added and groups merged.
+    private long groupsSize;
+
+    /**
+     * @param keyExpressions   The expressions whose values identify the group of a row. These must not contain
+     *                         aggregate functions.
+     * @param valueExpressions The expressions to evaluate for each group.
+     */
+    public GroupingTable(final ExpressionSet keyExpressions, final ExpressionSet valueExpressions) {
+        for (int i = 0; i < keyExpressions.size(); i++) {
+            final Expression expression = keyExpressions.getExpression(i);
+            if (expression != null && expression.hasAggregate()) {
+                throw new IllegalArgumentException("Key expression '" + expression +
+                        "' must not contain an aggregate function");
+            }
+        }
+
+        this.keyExpressions = keyExpressions;
+        this.valueExpressions = valueExpressions;
+        keyGenerators = keyExpressions.createGenerators();
+        keyValues = new Val[keyExpressions.size()];
+
+        slotHashes = new int[INITIAL_CAPACITY];
+        slotGroups = new int[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        keys = new GroupKey[INITIAL_CAPACITY / 2];
+        groups = new GeneratorSet[INITIAL_CAPACITY / 2];
+    }
+
+    /**
+     * Add a row to the group it belongs to, creating the group if this is the first row for it.
+     *
+     * @param values The data values of the row.
+     */
+    public void add(final Val[] values) {
+        evaluateKey(keyGenerators, values, keyValues);
+        add(keyValues, GroupKey.hash(keyValues), values);
+    }
+
+    /**
+     * Evaluate the key expressions for a row.
+     *
+     * @param keyGenerators The generators of the key expressions.
+     * @param values        The data values of the row.
+     * @param keyValues     The array to write the value of each key expression to.
+     */
+    static void evaluateKey(final GeneratorSet keyGenerators, final Val[] values, final Val[] keyValues) {
+        keyGenerators.set(values);
+        for (int i = 0; i < keyValues.length; i++) {
+            final Generator generator = keyGenerators.get(i);
+            final Val val = generator == null
+                    ? null
+                    : generator.eval();
+            keyValues[i] = val == null
+                    ? ValNull.INSTANCE
+                    : val;
+        }
+    }
+
+    /**
+     * Add a row whose key has already been evaluated.
+     *
+     * @param keyValues The value of each key expression for the row, which is copied if a group is created.
+     * @param hash      The hash of the key values.
+     * @param values    The data values of the row.
+     */
+    void add(final Val[] keyValues, final int hash, final Val[] values) {
+        final int group = find(hash, keyValues);
+        if (group < 0) {
+            final GroupKey key = new GroupKey(keyValues.clone(), hash);
+            final GeneratorSet generators = valueExpressions.createGenerators();
+            generators.set(values);
+            insert(-group - 1, key, generators);
+            groupsSize += key.estimatedSizeInBytes() + generators.estimatedSizeInBytes();
+        } else {
+            final GeneratorSet generators = groups[group];
+            final long before = generators.estimatedSizeInBytes();
+            generators.set(values);
+            groupsSize += generators.estimatedSizeInBytes() - before;
+        }
+    }
+
+    /**
+     * Merge the groups of another table created from the same expression sets into this one. Groups that are not
+     * in this table are moved rather than copied so the other table must not be used afterwards.
+     *
+     * @param table The table to merge into this one.
+     */
+    public void merge(final GroupingTable table) {
+        for (int i = 0; i < table.size; i++) {
+            merge(table.keys[i], table.groups[i]);
+        }
+    }
+
+    /**
+     * Remove every group so that the table can be reused, keeping the capacity it has grown to. This must be used
+     * after merging the table into another one instead of using it again directly.
+     */
+    void clear() {
+        Arrays.fill(slotGroups, 0);
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(groups, 0, size, null);
+        size = 0;
+        groupsSize = 0;
+    }
+
+    /**
+     * Merge a group into this table, taking the generators if the group is not in this table.
+     *
+     * @param key        The key of the group.
+     * @param generators The generators of the group.
+     */
+    void merge(final GroupKey key, final GeneratorSet generators) {
+        final int group = find(key.hashCode(), key.getValues());
+        if (group < 0) {
+            insert(-group - 1, key, generators);
+            groupsSize += key.estimatedSizeInBytes() + generators.estimatedSizeInBytes();
+        } else {
+            final GeneratorSet existing = groups[group];
+            final long before = existing.estimatedSizeInBytes();
+            existing.merge(generators);
+            groupsSize += existing.estimatedSizeInBytes() - before;
+        }
+    }
+
+    /**
+     * @return The index of the group or, if there is no group for the key, -(slot + 1) where slot is the empty
+     * slot that the group should be inserted into.
+     */
+    private int find(final int hash, final Val[] keyValues) {
+        int slot = hash & mask;
+        while (true) {
+            final int group = slotGroups[slot] - 1;
+            if (group < 0) {
+                return -slot - 1;
+            }
+            if (slotHashes[slot] == hash && keys[group].matches(keyValues)) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int insert(final int slot, final GroupKey key, final GeneratorSet generators) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            groups = Arrays.copyOf(groups, size * 2);
+        }
+
+        final int group = size++;
+        keys[group] = key;
+        groups[group] = generators;
+        slotHashes[slot] = key.hashCode();
+        slotGroups[slot] = group + 1;
+
+        // Keep the table no more than half full so that probes stay short.
+        if (size * 2 > slotGroups.length) {
+            resize(slotGroups.length * 2);
+        }
+        return group;
+    }
+
+    private void resize(final int capacity) {
+        slotHashes = new int[capacity];
+        slotGroups = new int[capacity];
+        mask = capacity - 1;
+        for (int group = 0; group < size; group++) {
+            final int hash = keys[group].hashCode();
+            int slot = hash & mask;
+            while (slotGroups[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slotHashes[slot] = hash;
+            slotGroups[slot] = group + 1;
+        }
+    }
+
+    /**
+     * @return The number of groups.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param group The index of the group, from zero to size() - 1 in the order the groups were created.
+     * @return The values of the key expressions for the group.
+     */
+    public GroupKey getKey(final int group) {
+        return keys[group];
+    }
+
+    /**
+     * @param group The index of the group, from zero to size() - 1 in the order the groups were created.
+     * @return The generators of the value expressions for the group.
+     */
+    public GeneratorSet getGenerators(final int group) {
+        return groups[group];
+    }
+
+    /**
+     * Estimate the memory held by the table. The estimate for the groups is adjusted as each row is added or group
+     * merged so this is cheap enough to check after every row.
+     *
+     * @return The approximate number of bytes held by the keys, generators and hash slots of the table.
+     */
+    public long estimatedSizeInBytes() {
+        return SizeEstimates.array(slotHashes.length, 4) +
+                SizeEstimates.array(slotGroups.length, 4) +
+                SizeEstimates.array(keys.length, SizeEstimates.REFERENCE) +
+                SizeEstimates.array(groups.length, SizeEstimates.REFERENCE) +
+                groupsSize;
+    }
+
+    public ExpressionSet getKeyExpressions() {
+        return keyExpressions;
+    }
+
+    public ExpressionSet getValueExpressions() {
+        return valueExpressions;
+    }
+}
@@ -17,10 +17,10 @@
 package stroom.dashboard.expression.v1;
 
 import java.io.Serializable;
-import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
+import java.util.Arrays;
 
 class Hash extends AbstractFunction implements Serializable {
     static final String NAME = "hash";
@@ -38,18 +38,6 @@ class Hash extends AbstractFunction implements Serializable {
         super(name, 1, 3);
     }
 
-    private static String hash(final String value, final String algorithm, final String salt) throws NoSuchAlgorithmException {
-        // Create MessageDigest object.
-        final MessageDigest digest = MessageDigest.getInstance(algorithm);
-        if (salt != null) {
-            digest.update(salt.getBytes());
-        }
-
-        final byte[] arr = digest.digest(value.getBytes());
-        // Converts message digest value in base 16 (hex)
-        return new BigInteger(1, arr).toString(16);
-    }
-
     @Override
     public void setParams(final Param[] params) throws ParseException {
         super.setParams(params);
@@ -63,7 +51,7 @@ class Hash extends AbstractFunction implements Serializable {
 
         try {
             // Test that the algorithm is a valid one.
-            MessageDigest.getInstance(algorithm);
+            final Hasher hasher = Hasher.create(algorithm, salt);
 
             final Param param = params[0];
             if (param instanceof Function) {
@@ -75,7 +63,7 @@ class Hash extends AbstractFunction implements Serializable {
                 if (string == null) {
                     throw new ParseException("Unable to convert first argument of '" + name + "' function to string", 0);
                 }
-                gen = new StaticValueFunction(ValString.create(hash(string, algorithm, salt))).createGenerator();
+                gen = new StaticValueFunction(ValString.create(hasher.hash(string))).createGenerator();
             }
         } catch (final NoSuchAlgorithmException e) {
             throw new ParseException(e.getMessage(), 0);
@@ -103,6 +91,9 @@ class Hash extends AbstractFunction implements Serializable {
         private final String algorithm;
         private final String salt;
 
+        // Created on first use so that the digest is reused for every value but isn't serialised.
+        private transient Hasher hasher;
+
         Gen(final Generator childGenerator, final String algorithm, final String salt) {
             super(childGenerator);
             this.algorithm = algorithm;
@@ -122,10 +113,144 @@ class Hash extends AbstractFunction implements Serializable {
             }
 
             try {
-                return ValString.create(hash(val.toString(), algorithm, salt));
+                if (hasher == null) {
+                    hasher = Hasher.create(algorithm, salt);
+                }
+                return ValString.create(hasher.hash(val.toString()));
             } catch (final NoSuchAlgorithmException | RuntimeException e) {
                 return ValErr.create(e.getMessage());
             }
         }
     }
+
+    /**
+     * Hashes values with an algorithm and optional salt, reusing whatever state the algorithm needs between values.
+     * Instances are not thread safe.
+     */
+    abstract static class Hasher {
+        static final String XXHASH64 = "xxHash64";
+        static final String MURMUR3_128 = "Murmur3-128";
+
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        final byte[] salt;
+
+        Hasher(final String salt) {
+            this.salt = salt == null
+                    ? new byte[0]
+                    : salt.getBytes();
+        }
+
+        static Hasher create(final String algorithm, final String salt) throws NoSuchAlgorithmException {
+            if (XXHASH64.equalsIgnoreCase(algorithm)) {
+                return new XxHash64Hasher(salt);
+            }
+            if (MURMUR3_128.equalsIgnoreCase(algorithm)) {
+                return new Murmur3Hasher(salt);
+            }
+            return new DigestHasher(MessageDigest.getInstance(algorithm), salt);
+        }
+
+        abstract String hash(String value);
+
+        /**
+         * @param stripLeadingZeros True to drop leading zeros as BigInteger.toString(16) did for digests.
+         */
+        static String toHex(final byte[] bytes, final boolean stripLeadingZeros) {
+            final char[] chars = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; i++) {
+                chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+                chars[(i * 2) + 1] = HEX[bytes[i] & 0xF];
+            }
+
+            int start = 0;
+            if (stripLeadingZeros) {
+                while (start < chars.length - 1 && chars[start] == '0') {
+                    start++;
+                }
+            }
+            return new String(chars, start, chars.length - start);
+        }
+    }
+
+    private static class DigestHasher extends Hasher {
+        private final MessageDigest digest;
+
+        DigestHasher(final MessageDigest digest, final String salt) {
+            super(salt);
+            this.digest = digest;
+        }
+
+        @Override
+        String hash(final String value) {
+            // Digesting resets the digest ready for the next value.
+            digest.update(salt);
+            return toHex(digest.digest(value.getBytes()), true);
+        }
+    }
+
+    /**
+     * Base for non-cryptographic hashes that hash the salt and value together from a reused buffer.
+     */
+    private abstract static class BufferHasher extends Hasher {
+        private byte[] buffer;
+
+        BufferHasher(final String salt) {
+            super(salt);
+            buffer = Arrays.copyOf(this.salt, this.salt.length + 64);
+        }
+
+        @Override
+        String hash(final String value) {
+            final byte[] bytes = value.getBytes();
+            final int length = salt.length + bytes.length;
+            if (length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            }
+            System.arraycopy(bytes, 0, buffer, salt.length, bytes.length);
+            return hash(buffer, length);
+        }
+
+        abstract String hash(byte[] bytes, int length);
+    }
+
+    private static class XxHash64Hasher extends BufferHasher {
+        private final byte[] result = new byte[8];
+
+        XxHash64Hasher(final String salt) {
+            super(salt);
+        }
+
+        @Override
+        String hash(final byte[] bytes, final int length) {
+            putLong(result, 0, NonCryptographicHash.xxHash64(bytes, length), false);
+            return toHex(result, false);
+        }
+    }
+
+    private static class Murmur3Hasher extends BufferHasher {
+        private final long[] halves = new long[2];
+        private final byte[] result = new byte[16];
+
+        Murmur3Hasher(final String salt) {
+            super(salt);
+        }
+
+        @Override
+        String hash(final byte[] bytes, final int length) {
+            NonCryptographicHash.murmur3x64128(bytes, length, halves);
+            putLong(result, 0, halves[0], true);
+            putLong(result, 8, halves[1], true);
+            return toHex(result, false);
+        }
+    }
+
+    private static void putLong(final byte[] bytes, final int pos, final long value, final boolean littleEndian) {
+        for (int i = 0; i < 8; i++) {
+            final int shift = littleEndian
+                    ? i * 8
+                    : (7 - i) * 8;
+            bytes[pos + i] = (byte) (value >>> shift);
+        }
+    }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct values added to it using a fixed amount of memory.
+ * With a precision of p the sketch has 2^p registers and a standard error of about 1.04 / sqrt(2^p).
+ * <p>
+ * Until enough registers have been set for a register array to be the smaller representation the set registers
+ * are kept as a sorted sparse list, so small groups stay small when serialised. Merging two sketches with the same
+ * precision is lossless, i.e. the result is the same as if all values had been added to one sketch.
+ */
+class HyperLogLog implements Serializable {
+    private static final long serialVersionUID = 4180417862196932135L;
+
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 16;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final int SHALLOW_SIZE = 32;
+
+    private final int precision;
+
+    // Each sparse entry is a register index shifted left by 8 bits combined with the register value.
+    private int[] sparse;
+    private int sparseSize;
+    private byte[] registers;
+
+    HyperLogLog(final int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Create a 64 bit hash of a value. Values are only given the same hash if they are equal, e.g. an integer and
+     * a double with the same numeric value hash differently just as they are treated as different values by
+     * countUnique().
+     */
+    static long hash(final Val val) {
+        if (val instanceof ValString) {
+            final String string = val.toString();
+            long hash = FNV_OFFSET_BASIS;
+            for (int i = 0; i < string.length(); i++) {
+                hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+            }
+            return mix(hash, 1);
+        } else if (val instanceof ValDouble) {
+            return mix(Double.doubleToLongBits(((ValDouble) val).doubleValue()), 2);
+        } else if (val instanceof ValLong) {
+            return mix(((ValLong) val).longValue(), 3);
+        } else if (val instanceof ValInteger) {
+            return mix(((ValInteger) val).longValue(), 4);
+        } else if (val instanceof ValBoolean) {
+            return mix(Boolean.TRUE.equals(val.toBoolean()) ? 1 : 0, 5);
+        }
+        return mix(val.toString().hashCode(), val.getClass().getName().hashCode());
+    }
+
+    private static long mix(final long value, final long type) {
+        // Murmur3 64 bit finaliser.
+        long hash = value + type * GOLDEN_GAMMA;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    void add(final long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        // The guard bit limits the rank to the number of bits remaining after the index.
+        final int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        update(index, rank);
+    }
+
+    void merge(final HyperLogLog hyperLogLog) {
+        if (precision != hyperLogLog.precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precision");
+        }
+
+        if (hyperLogLog.registers != null) {
+            if (registers == null) {
+                toDense();
+            }
+            for (int i = 0; i < registers.length; i++) {
+                if (hyperLogLog.registers[i] > registers[i]) {
+                    registers[i] = hyperLogLog.registers[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < hyperLogLog.sparseSize; i++) {
+                final int entry = hyperLogLog.sparse[i];
+                update(entry >>> 8, entry & 0xff);
+            }
+        }
+    }
+
+    long estimate() {
+        final int m = 1 << precision;
+        if (registers == null) {
+            // The sparse list never holds enough registers to leave the range where linear counting is used.
+            return linearCount(m, m - sparseSize);
+        }
+
+        double sum = 0;
+        int zeros = 0;
+        for (final byte register : registers) {
+            sum += 1D / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        final double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return linearCount(m, zeros);
+        }
+        // With a 64 bit hash no correction is needed for large cardinalities.
+        return Math.round(estimate);
+    }
+
+    private long linearCount(final int m, final int zeros) {
+        return Math.round(m * Math.log((double) m / zeros));
+    }
+
+    private double alpha(final int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    private void update(final int index, final int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midIndex = sparse[mid] >>> 8;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                if (rank > (sparse[mid] & 0xff)) {
+                    sparse[mid] = (index << 8) | rank;
+                }
+                return;
+            }
+        }
+
+        // Sparse entries take 4 bytes so switch to registers once they would take more space.
+        if (sparseSize == (1 << precision) / 4) {
+            toDense();
+            registers[index] = (byte) rank;
+            return;
+        }
+
+        if (sparse == null) {
+            sparse = new int[4];
+        } else if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.max(4, sparseSize * 2));
+        }
+        System.arraycopy(sparse, low, sparse, low + 1, sparseSize - low);
+        sparse[low] = (index << 8) | rank;
+        sparseSize++;
+    }
+
+    /**
+     * Write the sketch as generator state. The sorted sparse entries are written as differences from the previous
+     * entry so that each one only takes a few bytes.
+     */
+    void write(final GeneratorOutput output) throws IOException {
+        if (registers != null) {
+            output.writeBoolean(true);
+            output.writeBytes(registers);
+        } else {
+            output.writeBoolean(false);
+            output.writeSize(sparseSize);
+            int previous = 0;
+            for (int i = 0; i < sparseSize; i++) {
+                output.writeSize(sparse[i] - previous);
+                previous = sparse[i];
+            }
+        }
+    }
+
+    void read(final GeneratorInput input) throws IOException {
+        if (input.readBoolean()) {
+            final byte[] bytes = input.readBytes();
+            if (bytes.length != 1 << precision) {
+                throw new StreamCorruptedException("Expected " + (1 << precision) + " registers but read " +
+                        bytes.length);
+            }
+            registers = bytes;
+            sparse = null;
+            sparseSize = 0;
+        } else {
+            registers = null;
+            sparseSize = input.readSize();
+            sparse = sparseSize == 0 ? null : new int[sparseSize];
+            int previous = 0;
+            for (int i = 0; i < sparseSize; i++) {
+                previous += input.readSize();
+                sparse[i] = previous;
+            }
+        }
+    }
+
+    /**
+     * @return The approximate number of bytes held by the sketch, which grows with the number of distinct values
+     * until the registers are used.
+     */
+    long estimatedSizeInBytes() {
+        long estimate = SHALLOW_SIZE;
+        if (sparse != null) {
+            estimate += SizeEstimates.array(sparse.length, 4);
+        }
+        if (registers != null) {
+            estimate += SizeEstimates.array(registers.length, 1);
+        }
+        return estimate;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        // Don't serialise unused sparse capacity.
+        if (sparse != null && sparse.length > sparseSize) {
+            sparse = sparseSize == 0 ? null : Arrays.copyOf(sparse, sparseSize);
+        }
+        out.defaultWriteObject();
+    }
+
+    private void toDense() {
+        registers = new byte[1 << precision];
+        for (int i = 0; i < sparseSize; i++) {
+            final int entry = sparse[i];
+            registers[entry >>> 8] = (byte) (entry & 0xff);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+}
@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
@@ -73,6 +74,7 @@ class Joining extends AbstractFunction {
         private final String delimiter;
         private final int limit;
         private final List<String> list = new ArrayList<>();
+        private long listSize;
 
         Gen(final Generator childGenerator, final String delimiter, final int limit) {
             super(childGenerator);
@@ -88,7 +90,7 @@ class Joining extends AbstractFunction {
                 final Val val = childGenerator.eval();
                 final String value = val.toString();
                 if (value != null) {
-                    list.add(value);
+                    add(value);
                 }
             }
         }
@@ -103,10 +105,42 @@ class Joining extends AbstractFunction {
             final Gen gen = (Gen) generator;
             for (final String value : gen.list) {
                 if (list.size() < limit) {
-                    list.add(value);
+                    add(value);
                 }
             }
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            output.writeSize(list.size());
+            for (final String value : list) {
+                output.writeString(value);
+            }
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            list.clear();
+            listSize = 0;
+            final int size = input.readSize();
+            for (int i = 0; i < size; i++) {
+                add(input.readString());
+            }
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            // The list grows by half each time so allow for the unused part of the backing array.
+            return super.estimatedSizeInBytes() + SizeEstimates.ARRAY_LIST + listSize +
+                    SizeEstimates.array(list.size() / 2, SizeEstimates.REFERENCE);
+        }
+
+        private void add(final String value) {
+            list.add(value);
+            listSize += SizeEstimates.REFERENCE + SizeEstimates.string(value);
+        }
     }
 }
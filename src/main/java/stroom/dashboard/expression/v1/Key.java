@@ -3,4 +3,10 @@ package stroom.dashboard.expression.v1;
 import java.io.Serializable;
 
 public interface Key extends Serializable {
+    /**
+     * @return The approximate number of bytes held by this key, e.g. when it is held by countGroups().
+     */
+    default long estimatedSizeInBytes() {
+        return SizeEstimates.OBJECT_HEADER;
+    }
 }
@@ -25,6 +25,7 @@ class Match extends AbstractManyChildFunction implements Serializable {
     private static final long serialVersionUID = -305845496003936297L;
     private Generator gen;
     private boolean simple;
+    private Pattern pattern;
 
     public Match(final String name) {
         super(name, 2, 2);
@@ -63,7 +64,7 @@ class Match extends AbstractManyChildFunction implements Serializable {
                 if (regex.length() == 0) {
                     throw new ParseException("An empty regex has been defined for second argument of '" + name + "' function", 0);
                 }
-                PatternCache.get(regex);
+                pattern = PatternCache.get(regex);
             }
         }
     }
@@ -78,7 +79,7 @@ class Match extends AbstractManyChildFunction implements Serializable {
 
     @Override
     protected Generator createGenerator(final Generator[] childGenerators) {
-        return new Gen(childGenerators);
+        return new Gen(childGenerators, new RegexMatcher(pattern));
     }
 
     @Override
@@ -92,8 +93,11 @@ class Match extends AbstractManyChildFunction implements Serializable {
     private static class Gen extends AbstractManyChildGenerator {
         private static final long serialVersionUID = 8153777070911899616L;
 
-        Gen(final Generator[] childGenerators) {
+        private final RegexMatcher regexMatcher;
+
+        Gen(final Generator[] childGenerators, final RegexMatcher regexMatcher) {
             super(childGenerators);
+            this.regexMatcher = regexMatcher;
         }
 
         @Override
@@ -109,16 +113,18 @@ class Match extends AbstractManyChildFunction implements Serializable {
             if (!val.type().isValue()) {
                 return val;
             }
-            final Val valRegex = childGenerators[1].eval();
-            if (!valRegex.type().isValue()) {
-                return ValErr.wrap(valRegex);
-            }
 
             try {
                 final String value = val.toString();
-                final String regex = valRegex.toString();
-                final Pattern pattern = PatternCache.get(regex);
-                return ValBoolean.create(pattern.matcher(value).matches());
+                if (regexMatcher.isStatic()) {
+                    return ValBoolean.create(regexMatcher.matcher(value).matches());
+                }
+
+                final Val valRegex = childGenerators[1].eval();
+                if (!valRegex.type().isValue()) {
+                    return ValErr.wrap(valRegex);
+                }
+                return ValBoolean.create(regexMatcher.matcher(valRegex.toString(), value).matches());
 
             } catch (final RuntimeException e) {
                 return ValErr.create(e.getMessage());
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.text.ParseException;
+
+class Median extends AbstractManyChildFunction implements AggregateFunction {
+    static final String NAME = "median";
+
+    public Median(final String name) {
+        super(name, 1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void setParams(final Param[] params) throws ParseException {
+        super.setParams(params);
+
+        for (final Function function : functions) {
+            if (function.hasAggregate()) {
+                throw new ParseException("Inner param of '" + name + "' cannot be an aggregating function", 0);
+            }
+        }
+    }
+
+    @Override
+    public Generator createGenerator() {
+        // If we only have a single param then we are operating in aggregate
+        // mode.
+        if (isAggregate()) {
+            final Generator childGenerator = functions[0].createGenerator();
+            return new Percentile.Gen(childGenerator, 0.5);
+        }
+
+        return super.createGenerator();
+    }
+
+    @Override
+    protected Generator createGenerator(final Generator[] childGenerators) {
+        return new Gen(childGenerators);
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return functions.length == 1;
+    }
+
+    private static class Gen extends AbstractManyChildGenerator {
+        private static final long serialVersionUID = 1457931453958240245L;
+
+        Gen(final Generator[] generators) {
+            super(generators);
+        }
+
+        @Override
+        public void set(final Val[] values) {
+            for (final Generator gen : childGenerators) {
+                gen.set(values);
+            }
+        }
+
+        @Override
+        public Val eval() {
+            final TDigest digest = new TDigest(TDigest.DEFAULT_COMPRESSION);
+            for (final Generator gen : childGenerators) {
+                final Val val = gen.eval();
+                if (!val.type().isValue()) {
+                    return val;
+                }
+                final Double value = val.toDouble();
+                if (value != null) {
+                    digest.add(value);
+                }
+            }
+
+            if (digest.isEmpty()) {
+                return ValNull.INSTANCE;
+            }
+            return ValDouble.create(digest.quantile(0.5));
+        }
+    }
+}
@@ -29,9 +29,29 @@ class Negate extends NumericFunction {
         return CALC;
     }
 
+    @Override
+    public void appendString(final StringBuilder sb) {
+        // When used as a unary minus operator the sign must precede the param.
+        if (name.length() == 1) {
+            sb.append(name);
+        }
+        super.appendString(sb);
+    }
+
     static class Calc extends Calculator {
         private static final long serialVersionUID = 1099553839843710283L;
 
+        @Override
+        Val calc(final Val current, final Val value) {
+            // There is only ever a single value to negate so there is no current value to combine it with.
+            return super.calc(ValDouble.create(0), value);
+        }
+
+        @Override
+        double start(final double val) {
+            return op(0, val);
+        }
+
         @Override
         protected double op(final double cur, final double val) {
             return val * -1;
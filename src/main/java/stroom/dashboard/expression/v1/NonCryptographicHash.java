@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+/**
+ * Fast non-cryptographic hashes for hash() when values only need to be grouped or pseudonymised consistently rather
+ * than protected against deliberate collisions. Both read input as little endian and match the reference
+ * implementations for a seed of 0.
+ */
+final class NonCryptographicHash {
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private NonCryptographicHash() {
+        // Utility
+    }
+
+    static long xxHash64(final byte[] bytes, final int length) {
+        int pos = 0;
+        long hash;
+        if (length >= 32) {
+            long v1 = PRIME64_1 + PRIME64_2;
+            long v2 = PRIME64_2;
+            long v3 = 0;
+            long v4 = -PRIME64_1;
+            final int limit = length - 32;
+            do {
+                v1 = xxRound(v1, getLong(bytes, pos));
+                v2 = xxRound(v2, getLong(bytes, pos + 8));
+                v3 = xxRound(v3, getLong(bytes, pos + 16));
+                v4 = xxRound(v4, getLong(bytes, pos + 24));
+                pos += 32;
+            } while (pos <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = xxMergeRound(hash, v1);
+            hash = xxMergeRound(hash, v2);
+            hash = xxMergeRound(hash, v3);
+            hash = xxMergeRound(hash, v4);
+        } else {
+            hash = PRIME64_5;
+        }
+
+        hash += length;
+
+        while (pos + 8 <= length) {
+            hash ^= xxRound(0, getLong(bytes, pos));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+            pos += 8;
+        }
+        if (pos + 4 <= length) {
+            hash ^= (getInt(bytes, pos) & 0xFFFFFFFFL) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            pos += 4;
+        }
+        while (pos < length) {
+            hash ^= (bytes[pos] & 0xFFL) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+            pos++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long xxRound(final long acc, final long input) {
+        return Long.rotateLeft(acc + input * PRIME64_2, 31) * PRIME64_1;
+    }
+
+    private static long xxMergeRound(final long acc, final long val) {
+        return (acc ^ xxRound(0, val)) * PRIME64_1 + PRIME64_4;
+    }
+
+    /**
+     * The x64 128 bit variant of MurmurHash3.
+     *
+     * @param result Receives the two halves of the hash.
+     */
+    static void murmur3x64128(final byte[] bytes, final int length, final long[] result) {
+        long h1 = 0;
+        long h2 = 0;
+
+        final int blockEnd = length & ~15;
+        for (int pos = 0; pos < blockEnd; pos += 16) {
+            h1 ^= mixK1(getLong(bytes, pos));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(getLong(bytes, pos + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        final int tail = length - blockEnd;
+        for (int i = tail - 1; i >= 8; i--) {
+            k2 ^= (bytes[blockEnd + i] & 0xFFL) << ((i - 8) * 8);
+        }
+        for (int i = Math.min(tail, 8) - 1; i >= 0; i--) {
+            k1 ^= (bytes[blockEnd + i] & 0xFFL) << (i * 8);
+        }
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        result[0] = h1;
+        result[1] = h2;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(final byte[] bytes, final int pos) {
+        return (bytes[pos] & 0xFFL) |
+                (bytes[pos + 1] & 0xFFL) << 8 |
+                (bytes[pos + 2] & 0xFFL) << 16 |
+                (bytes[pos + 3] & 0xFFL) << 24 |
+                (bytes[pos + 4] & 0xFFL) << 32 |
+                (bytes[pos + 5] & 0xFFL) << 40 |
+                (bytes[pos + 6] & 0xFFL) << 48 |
+                (bytes[pos + 7] & 0xFFL) << 56;
+    }
+
+    private static int getInt(final byte[] bytes, final int pos) {
+        return (bytes[pos] & 0xFF) |
+                (bytes[pos + 1] & 0xFF) << 8 |
+                (bytes[pos + 2] & 0xFF) << 16 |
+                (bytes[pos + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * Selects the nth smallest value of a group, i.e. the value that nth() would select if the group were sorted by the
+ * value. Only the n smallest values are kept so memory does not grow with the size of the group.
+ */
+class NthValue extends AbstractFunction {
+    static final String NAME = "nthValue";
+
+    private int pos;
+
+    private Function function;
+
+    public NthValue(final String name) {
+        super(name, 2, 2);
+    }
+
+    @Override
+    public void setParams(final Param[] params) throws ParseException {
+        super.setParams(params);
+
+        pos = ParamParseUtil.parseIntParam(params, 1, name, true);
+
+        final Param param = params[0];
+        if (param instanceof Function) {
+            function = (Function) param;
+
+            if (function.hasAggregate()) {
+                throw new ParseException(name + " cannot be applied to aggregating function", 0);
+            }
+
+        } else {
+            function = new StaticValueFunction((Val) param);
+        }
+    }
+
+    @Override
+    public Generator createGenerator() {
+        final Generator childGenerator = function.createGenerator();
+        return new Gen(childGenerator, new ValHeap(pos, false));
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    @Override
+    public boolean hasAggregate() {
+        return isAggregate();
+    }
+
+    private static class Gen extends AbstractSingleChildGenerator {
+        private static final long serialVersionUID = 2283480516476624960L;
+
+        private final ValHeap valHeap;
+
+        Gen(final Generator childGenerator, final ValHeap valHeap) {
+            super(childGenerator);
+            this.valHeap = valHeap;
+        }
+
+        @Override
+        public void set(final Val[] values) {
+            childGenerator.set(values);
+            final Val val = childGenerator.eval();
+            if (val.type().isValue()) {
+                valHeap.add(val);
+            }
+        }
+
+        @Override
+        public Val eval() {
+            // Until n values have been seen there is no nth value.
+            if (!valHeap.isFull()) {
+                return ValNull.INSTANCE;
+            }
+            return valHeap.peek();
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            final Gen gen = (Gen) generator;
+            valHeap.merge(gen.valHeap);
+            super.merge(generator);
+        }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            valHeap.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            valHeap.read(input);
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + valHeap.estimatedSizeInBytes();
+        }
+    }
+}
@@ -57,10 +57,10 @@ public abstract class NumericFunction extends AbstractManyChildFunction {
         }
     }
 
-    private static class Gen extends AbstractManyChildGenerator {
+    static class Gen extends AbstractManyChildGenerator {
         private static final long serialVersionUID = 217968020285584214L;
 
-        private final Calculator calculator;
+        final Calculator calculator;
 
         Gen(final Generator[] childGenerators, final Calculator calculator) {
             super(childGenerators);
@@ -74,19 +74,87 @@ public abstract class NumericFunction extends AbstractManyChildFunction {
             }
         }
 
+        @Override
+        public void setBatch(final ValBlock block) {
+            for (final Generator generator : childGenerators) {
+                generator.setBatch(block);
+            }
+        }
+
         @Override
         public Val eval() {
+            // Avoid creating intermediate values when all of the children produce numbers.
+            final double result = calculator.calc(childGenerators);
+            if (!Double.isNaN(result)) {
+                return ValDouble.create(result);
+            }
+            return evalVals();
+        }
+
+        /**
+         * Evaluate the children as values and combine them. Child numeric functions are evaluated in the same way
+         * rather than trying primitives again so that each function in a chain such as `'a'+'b'+'c'` is only
+         * evaluated once when falling back.
+         */
+        private Val evalVals() {
             final Val[] vals = new Val[childGenerators.length];
             for (int i = 0; i < vals.length; i++) {
-                final Val val = childGenerators[i].eval();
+                final Generator generator = childGenerators[i];
+                if (generator instanceof Gen) {
+                    vals[i] = ((Gen) generator).evalVals();
+                } else {
+                    vals[i] = generator.eval();
+                }
+            }
+            return calc(vals);
+        }
+
+        @Override
+        public void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+            final int size = block.size();
+            final double[][] childDoubles = new double[childGenerators.length][];
+            final Val[][] childVals = new Val[childGenerators.length][];
+            for (int i = 0; i < childGenerators.length; i++) {
+                childDoubles[i] = block.borrowDoubles();
+                childVals[i] = block.borrowVals();
+                childGenerators[i].evalBatch(block, childDoubles[i], childVals[i]);
+            }
 
+            // Calculate all rows as primitives and then fall back to values for the rows that are not numbers.
+            System.arraycopy(childDoubles[0], 0, doubles, 0, size);
+            calculator.start(doubles, size);
+            for (int i = 1; i < childGenerators.length; i++) {
+                calculator.calc(doubles, childDoubles[i], size);
+            }
+            for (int row = 0; row < size; row++) {
+                if (Double.isNaN(doubles[row])) {
+                    final Val[] rowVals = new Val[childGenerators.length];
+                    for (int i = 0; i < rowVals.length; i++) {
+                        rowVals[i] = ValBlock.val(childDoubles[i], childVals[i], row);
+                    }
+                    vals[row] = calc(rowVals);
+                } else {
+                    vals[row] = null;
+                }
+            }
+
+            for (int i = 0; i < childGenerators.length; i++) {
+                block.release(childDoubles[i], childVals[i]);
+            }
+        }
+
+        @Override
+        public double evalDouble() {
+            return calculator.calc(childGenerators);
+        }
+
+        Val calc(final Val[] vals) {
+            for (final Val val : vals) {
                 if (!val.type().isValue()) {
                     return val;
                 } else if (!val.type().isNumber()) {
                     return ValErr.INSTANCE;
                 }
-
-                vals[i] = val;
             }
 
             Val value = ValNull.INSTANCE;
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Groups and aggregates rows on several threads. Rows are added by a single producer and passed to the executor in
+ * chunks. A chunk is grouped straight into the result if every earlier chunk has been merged. Otherwise it is grouped
+ * into a {@link GroupingTable} of its own, taken from a pool of empty tables, and merged into the result in the order
+ * the chunks were added as soon as every earlier chunk has been merged. Merging a table keeps the order of its groups
+ * and values, so the result is the same as adding every row to a single table, including the order of the groups and
+ * aggregates that depend on the order of rows such as {@code joining()}.
+ * <p>
+ * The number of chunks that have been submitted but not yet merged is limited so that a producer that is faster
+ * than the executor waits in {@link #add(Val[])} rather than buffering every row in the executor's queue. This also
+ * limits the number of grouped chunks that wait for an earlier chunk before they can be merged.
+ * <p>
+ * Only the task that adds to the result holds a lock while grouping rows, as every other table is only used by one
+ * task at a time. Grouped chunks are merged by one task at a time.
+ */
+public final class ParallelAggregator {
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+    private static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final ExpressionSet keyExpressions;
+    private final ExpressionSet valueExpressions;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final Semaphore chunksInFlight;
+
+    private final ConcurrentLinkedQueue<GroupingTable> tables = new ConcurrentLinkedQueue<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private Val[][] chunk;
+    private int chunkLength;
+    private int chunkCount;
+
+    // Grouped chunks by the order they were added, waiting for earlier chunks to be merged into the result.
+    private final ConcurrentHashMap<Integer, GroupingTable> grouped = new ConcurrentHashMap<>();
+    private final ReentrantLock mergeLock = new ReentrantLock();
+    private volatile int nextMerge;
+    private GroupingTable result;
+
+    /**
+     * @param keyExpressions   The expressions whose values identify the group of a row.
+     * @param valueExpressions The expressions to evaluate for each group.
+     * @param executor         The executor to group rows and merge tables with.
+     */
+    public ParallelAggregator(final ExpressionSet keyExpressions,
+                              final ExpressionSet valueExpressions,
+                              final ExecutorService executor) {
+        this(keyExpressions, valueExpressions, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param keyExpressions   The expressions whose values identify the group of a row.
+     * @param valueExpressions The expressions to evaluate for each group.
+     * @param executor         The executor to group rows and merge tables with.
+     * @param chunkSize        The number of rows to pass to the executor at a time.
+     */
+    public ParallelAggregator(final ExpressionSet keyExpressions,
+                              final ExpressionSet valueExpressions,
+                              final ExecutorService executor,
+                              final int chunkSize) {
+        this(keyExpressions, valueExpressions, executor, chunkSize, DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+    }
+
+    /**
+     * @param keyExpressions     The expressions whose values identify the group of a row.
+     * @param valueExpressions   The expressions to evaluate for each group.
+     * @param executor           The executor to group rows and merge tables with.
+     * @param chunkSize          The number of rows to pass to the executor at a time.
+     * @param maxChunksInFlight  The number of chunks that can be submitted to the executor before they have been
+     *                           merged. This should be at least the number of threads of the executor.
+     */
+    public ParallelAggregator(final ExpressionSet keyExpressions,
+                              final ExpressionSet valueExpressions,
+                              final ExecutorService executor,
+                              final int chunkSize,
+                              final int maxChunksInFlight) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        if (maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of chunks in flight must be at least 1");
+        }
+        this.keyExpressions = keyExpressions;
+        this.valueExpressions = valueExpressions;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        chunksInFlight = new Semaphore(maxChunksInFlight);
+        chunk = new Val[chunkSize][];
+    }
+
+    /**
+     * Add a row. Rows are grouped later on another thread so the array must not be changed after it is added.
+     *
+     * @param values The data values of the row.
+     * @throws InterruptedException If interrupted while waiting for earlier chunks to be merged.
+     */
+    public void add(final Val[] values) throws InterruptedException {
+        chunk[chunkLength++] = values;
+        if (chunkLength == chunkSize) {
+            submitChunk();
+        }
+    }
+
+    private void submitChunk() throws InterruptedException {
+        final Val[][] rows = chunk;
+        final int length = chunkLength;
+        final int sequence = chunkCount;
+        chunk = new Val[chunkSize][];
+        chunkLength = 0;
+
+        chunksInFlight.acquire();
+        try {
+            futures.add(executor.submit(() -> {
+                try {
+                    if (!groupInOrder(sequence, rows, length)) {
+                        GroupingTable table = tables.poll();
+                        if (table == null) {
+                            table = new GroupingTable(keyExpressions, valueExpressions);
+                        }
+                        try {
+                            for (int i = 0; i < length; i++) {
+                                table.add(rows[i]);
+                            }
+                        } finally {
+                            // A chunk that fails is still merged so that later chunks are not left waiting for it.
+                            grouped.put(sequence, table);
+                        }
+                    }
+                } finally {
+                    mergeGrouped();
+                }
+            }));
+        } catch (final RuntimeException e) {
+            chunksInFlight.release();
+            throw e;
+        }
+        chunkCount++;
+
+        // Only keep the futures of chunks that are still in flight, failing early if a chunk failed.
+        boolean failed = false;
+        for (final Future<?> future : futures) {
+            if (future.isDone() && isFailed(future)) {
+                failed = true;
+            }
+        }
+        if (failed) {
+            await(futures);
+        }
+        futures.removeIf(Future::isDone);
+    }
+
+    /**
+     * Group a chunk straight into the result if every earlier chunk has been merged and no other task is merging,
+     * as then no table of its own is needed to keep the order of the rows.
+     *
+     * @return True if the chunk was grouped into the result.
+     */
+    private boolean groupInOrder(final int sequence, final Val[][] rows, final int length) {
+        if (sequence != nextMerge || !mergeLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (sequence != nextMerge) {
+                return false;
+            }
+            if (result == null) {
+                result = new GroupingTable(keyExpressions, valueExpressions);
+            }
+            try {
+                for (int i = 0; i < length; i++) {
+                    result.add(rows[i]);
+                }
+            } finally {
+                nextMerge++;
+                chunksInFlight.release();
+            }
+            return true;
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * Merge grouped chunks into the result in the order they were added for as long as the next chunk has been
+     * grouped. A task that finds another task merging leaves its chunk to that task, which checks for the next
+     * chunk again once it has released the lock so that no grouped chunk is left unmerged.
+     */
+    private void mergeGrouped() {
+        RuntimeException failure = null;
+        while (grouped.containsKey(nextMerge) && mergeLock.tryLock()) {
+            try {
+                GroupingTable table;
+                while ((table = grouped.remove(nextMerge)) != null) {
+                    nextMerge++;
+                    try {
+                        if (result == null) {
+                            result = table;
+                        } else {
+                            result.merge(table);
+                            table.clear();
+                            tables.add(table);
+                        }
+                    } catch (final RuntimeException e) {
+                        // Carry on merging so that the producer is not left waiting for chunks in flight.
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    } finally {
+                        chunksInFlight.release();
+                    }
+                }
+            } finally {
+                mergeLock.unlock();
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Wait for all added rows to be grouped and merged. No more rows can be added afterwards.
+     *
+     * @return A table of all the groups.
+     * @throws InterruptedException If interrupted while waiting for rows to be grouped.
+     */
+    public GroupingTable complete() throws InterruptedException {
+        if (chunkLength > 0) {
+            submitChunk();
+        }
+        chunk = null;
+        await(futures);
+        tables.clear();
+
+        // Every task has finished so each grouped chunk has been merged by the task that grouped it or a later one.
+        if (result == null) {
+            return new GroupingTable(keyExpressions, valueExpressions);
+        }
+        return result;
+    }
+
+    /**
+     * Wait for every task to finish, even if one of them fails, so that no task is still using a table once this
+     * returns. The first failure is then thrown.
+     */
+    private static void await(final List<Future<?>> futures) throws InterruptedException {
+        Throwable failure = null;
+        try {
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+        } finally {
+            futures.clear();
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure.getMessage(), failure);
+        }
+    }
+
+    private static boolean isFailed(final Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+            return false;
+        } catch (final ExecutionException e) {
+            return true;
+        }
+    }
+}
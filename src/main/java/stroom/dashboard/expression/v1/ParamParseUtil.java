@@ -35,9 +35,9 @@ public class ParamParseUtil {
 
     public static int parseIntParam(final Param[] params, final int pos, final String functionName, final boolean positive) throws ParseException {
         if (params.length > pos) {
-            if (params[pos] instanceof Val) {
-                final Param param = params[pos];
-                final Integer num = ((Val) param).toInteger();
+            final Val val = getStaticValue(params[pos]);
+            if (val != null) {
+                final Integer num = val.toInteger();
                 if (num != null) {
                     if (positive && num <= 0) {
                         throw new ParseException("Positive number expected as " + getPos(pos) + " argument of '" + functionName + "' function", 0);
@@ -49,6 +49,20 @@ public class ParamParseUtil {
         throw new ParseException("Number expected as " + getPos(pos) + " argument of '" + functionName + "' function", 0);
     }
 
+    /**
+     * @return The value of a literal param or of a constant function that was folded into a static value when the
+     * expression was parsed, e.g. `90+5`, or null if the param is not constant.
+     */
+    static Val getStaticValue(final Param param) {
+        if (param instanceof Val) {
+            return (Val) param;
+        }
+        if (param instanceof StaticValueFunction) {
+            return ((StaticValueFunction) param).createGenerator().eval();
+        }
+        return null;
+    }
+
     private static String getPos(int pos) {
         if (pos < POSITIONS.length) {
             return POSITIONS[pos];
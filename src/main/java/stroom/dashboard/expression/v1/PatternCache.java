@@ -3,38 +3,39 @@ package stroom.dashboard.expression.v1;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Pattern;
 
-final class PatternCache {
+/**
+ * Caches compiled regular expressions for the functions that take a regex, e.g. match() and replace(). The cache can
+ * be used by every search thread at once without them blocking each other.
+ */
+public final class PatternCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(PatternCache.class);
 
     // Create cache
-    private static final int MAX_ENTRIES = 1000;
+    static final int DEFAULT_MAX_ENTRIES = 1000;
 
-    private static final Map<String, CachedPattern> MAP = Collections.synchronizedMap(new LinkedHashMap<String, CachedPattern>(MAX_ENTRIES + 1, .75F, true) {
-        // This method is called just after a new entry has been added
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            if (size() > MAX_ENTRIES) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Evicting old pattern: " + eldest.getKey());
-                }
-                return true;
-            }
-            return false;
-        }
-    });
+    private static final BoundedCache<String, CachedPattern> CACHE = new BoundedCache<>("pattern", DEFAULT_MAX_ENTRIES);
 
     private PatternCache() {
         // Utility
     }
 
+    /**
+     * @param maxEntries The maximum number of compiled patterns to keep.
+     */
+    public static void setMaxEntries(final int maxEntries) {
+        CACHE.setMaxEntries(maxEntries);
+    }
+
+    public static CacheStats getStats() {
+        return CACHE.getStats();
+    }
+
     static Pattern get(final String regex) {
         Objects.requireNonNull(regex, "Null regex");
-        final CachedPattern cachedPattern = MAP.computeIfAbsent(regex, k -> {
+        final CachedPattern cachedPattern = CACHE.computeIfAbsent(regex, k -> {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Compiling pattern: " + k);
             }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+class Percentile extends AbstractFunction implements AggregateFunction {
+    static final String NAME = "percentile";
+
+    private Function function;
+    private double percentile;
+
+    public Percentile(final String name) {
+        super(name, 2, 2);
+    }
+
+    @Override
+    public void setParams(final Param[] params) throws ParseException {
+        super.setParams(params);
+
+        final Val val = ParamParseUtil.getStaticValue(params[1]);
+        final Double percentile = val != null ? val.toDouble() : null;
+        if (percentile == null || !(percentile >= 0 && percentile <= 100)) {
+            throw new ParseException("Percentile argument of '" + name + "' must be a number between 0 and 100", 0);
+        }
+        this.percentile = percentile;
+
+        final Param param = params[0];
+        if (param instanceof Function) {
+            function = (Function) param;
+
+            if (function.hasAggregate()) {
+                throw new ParseException("Inner param of '" + name + "' cannot be an aggregating function", 0);
+            }
+
+        } else {
+            function = new StaticValueFunction((Val) param);
+        }
+    }
+
+    @Override
+    public Generator createGenerator() {
+        final Generator childGenerator = function.createGenerator();
+        return new Gen(childGenerator, percentile / 100);
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return true;
+    }
+
+    @Override
+    public boolean hasAggregate() {
+        return isAggregate();
+    }
+
+    static class Gen extends AbstractSingleChildGenerator {
+        private static final long serialVersionUID = -4425146617315846126L;
+
+        private final double quantile;
+        private final TDigest digest = new TDigest(TDigest.DEFAULT_COMPRESSION);
+
+        Gen(final Generator childGenerator, final double quantile) {
+            super(childGenerator);
+            this.quantile = quantile;
+        }
+
+        @Override
+        public void set(final Val[] values) {
+            childGenerator.set(values);
+            final double d = childGenerator.evalDouble();
+            if (!Double.isNaN(d)) {
+                digest.add(d);
+            } else {
+                final Double value = childGenerator.eval().toDouble();
+                if (value != null) {
+                    digest.add(value);
+                }
+            }
+        }
+
+        @Override
+        public Val eval() {
+            if (digest.isEmpty()) {
+                return ValNull.INSTANCE;
+            }
+            return ValDouble.create(digest.quantile(quantile));
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            final Gen gen = (Gen) generator;
+            digest.merge(gen.digest);
+            super.merge(generator);
+        }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            digest.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            digest.read(input);
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            return super.estimatedSizeInBytes() + digest.estimatedSizeInBytes();
+        }
+    }
+}
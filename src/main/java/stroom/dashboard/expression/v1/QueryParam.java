@@ -65,6 +65,11 @@ class QueryParam extends AbstractFunction {
         return gen;
     }
 
+    @Override
+    boolean isFoldable() {
+        return false;
+    }
+
     @Override
     public boolean hasAggregate() {
         return false;
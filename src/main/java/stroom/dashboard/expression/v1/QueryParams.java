@@ -54,6 +54,11 @@ class QueryParams extends AbstractFunction {
         return gen;
     }
 
+    @Override
+    boolean isFoldable() {
+        return false;
+    }
+
     @Override
     public boolean hasAggregate() {
         return false;
@@ -16,6 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+
 class Random extends AbstractFunction {
     static final String NAME = "random";
 
@@ -28,6 +30,16 @@ class Random extends AbstractFunction {
         return new Gen();
     }
 
+    @Override
+    boolean isFoldable() {
+        return false;
+    }
+
+    @Override
+    boolean isDeterministic() {
+        return false;
+    }
+
     @Override
     public boolean hasAggregate() {
         return false;
@@ -47,5 +59,15 @@ class Random extends AbstractFunction {
         public Val eval() {
             return value;
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            output.writeVal(value);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            value = input.readVal();
+        }
     }
 }
@@ -16,6 +16,9 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 class Ref extends AbstractFunction {
     private static final NullGen NULL_GEN = new NullGen();
     private final String text;
@@ -43,6 +46,11 @@ class Ref extends AbstractFunction {
         sb.append(text);
     }
 
+    @Override
+    boolean isFoldable() {
+        return false;
+    }
+
     @Override
     public boolean hasAggregate() {
         return false;
@@ -60,6 +68,17 @@ class Ref extends AbstractFunction {
         public Val eval() {
             return ValNull.INSTANCE;
         }
+
+        @Override
+        public void setBatch(final ValBlock block) {
+            // Ignore
+        }
+
+        @Override
+        public void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+            Arrays.fill(doubles, 0, block.size(), Double.NaN);
+            Arrays.fill(vals, 0, block.size(), ValNull.INSTANCE);
+        }
     }
 
     private static class Gen extends AbstractNoChildGenerator {
@@ -83,9 +102,59 @@ class Ref extends AbstractFunction {
             }
         }
 
+        @Override
+        public void setBatch(final ValBlock block) {
+            if (block.size() > 0) {
+                current = block.get(fieldIndex, block.size() - 1);
+            }
+        }
+
         @Override
         public Val eval() {
             return current;
         }
+
+        @Override
+        public void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+            final int size = block.size();
+            for (int i = 0; i < size; i++) {
+                final Val val = block.get(fieldIndex, i);
+                vals[i] = val;
+                if (val instanceof ValNumber) {
+                    doubles[i] = ((ValNumber) val).doubleValue();
+                } else {
+                    doubles[i] = Double.NaN;
+                }
+            }
+            if (size > 0) {
+                current = vals[size - 1];
+            }
+        }
+
+        @Override
+        public double evalDouble() {
+            if (current instanceof ValNumber) {
+                return ((ValNumber) current).doubleValue();
+            }
+            return Double.NaN;
+        }
+
+        @Override
+        public long evalLong() {
+            if (current instanceof ValNumber) {
+                return ((ValNumber) current).longValue();
+            }
+            return Long.MIN_VALUE;
+        }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            output.writeVal(current);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            current = input.readVal();
+        }
     }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.io.Serializable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches values against a regex argument of a function from within a generator. If the regex was a literal then it
+ * is compiled once when the function's params are set, otherwise it is looked up in the {@link PatternCache} for each
+ * value. In either case the matcher is reused between values while the pattern stays the same.
+ */
+final class RegexMatcher implements Serializable {
+    private static final long serialVersionUID = -2637211542346787463L;
+
+    private final Pattern pattern;
+
+    private transient Matcher matcher;
+
+    /**
+     * @param pattern The pattern compiled from a literal regex or null if the regex is not a literal.
+     */
+    RegexMatcher(final Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * @return True if the regex was a literal so the regex generator does not need to be evaluated.
+     */
+    boolean isStatic() {
+        return pattern != null;
+    }
+
+    /**
+     * Get a matcher for the value that has been reset ready for use. The matcher is only valid until the next call.
+     *
+     * @param regex The regex to use if the regex was not a literal.
+     * @param value The value to match.
+     * @return A matcher for the value.
+     */
+    Matcher matcher(final String regex, final CharSequence value) {
+        final Pattern pattern = this.pattern != null
+                ? this.pattern
+                : PatternCache.get(regex);
+        if (matcher == null || matcher.pattern() != pattern) {
+            matcher = pattern.matcher(value);
+        } else {
+            matcher.reset(value);
+        }
+        return matcher;
+    }
+
+    Matcher matcher(final CharSequence value) {
+        return matcher(null, value);
+    }
+}
@@ -25,6 +25,7 @@ class Replace extends AbstractManyChildFunction implements Serializable {
     private static final long serialVersionUID = -305845496003936297L;
     private Generator gen;
     private boolean simple;
+    private Pattern pattern;
 
     public Replace(final String name) {
         super(name, 3, 3);
@@ -64,7 +65,7 @@ class Replace extends AbstractManyChildFunction implements Serializable {
                 if (regex.length() == 0) {
                     throw new ParseException("An empty regex has been defined for second argument of '" + name + "' function", 0);
                 }
-                PatternCache.get(regex);
+                pattern = PatternCache.get(regex);
             }
         }
     }
@@ -79,7 +80,7 @@ class Replace extends AbstractManyChildFunction implements Serializable {
 
     @Override
     protected Generator createGenerator(final Generator[] childGenerators) {
-        return new Gen(childGenerators);
+        return new Gen(childGenerators, new RegexMatcher(pattern));
     }
 
     @Override
@@ -93,8 +94,11 @@ class Replace extends AbstractManyChildFunction implements Serializable {
     private static class Gen extends AbstractManyChildGenerator {
         private static final long serialVersionUID = 8153777070911899616L;
 
-        Gen(final Generator[] childGenerators) {
+        private final RegexMatcher regexMatcher;
+
+        Gen(final Generator[] childGenerators, final RegexMatcher regexMatcher) {
             super(childGenerators);
+            this.regexMatcher = regexMatcher;
         }
 
         @Override
@@ -110,9 +114,13 @@ class Replace extends AbstractManyChildFunction implements Serializable {
             if (!val.type().isValue()) {
                 return val;
             }
-            final Val valRegex = childGenerators[1].eval();
-            if (!valRegex.type().isValue()) {
-                return ValErr.wrap(valRegex);
+            String regex = null;
+            if (!regexMatcher.isStatic()) {
+                final Val valRegex = childGenerators[1].eval();
+                if (!valRegex.type().isValue()) {
+                    return ValErr.wrap(valRegex);
+                }
+                regex = valRegex.toString();
             }
             final Val valReplacement = childGenerators[2].eval();
             if (!valReplacement.type().isValue()) {
@@ -121,10 +129,8 @@ class Replace extends AbstractManyChildFunction implements Serializable {
 
             try {
                 final String value = val.toString();
-                final String regex = valRegex.toString();
                 final String replacement = valReplacement.toString();
-                final Pattern pattern = PatternCache.get(regex);
-                return ValString.create(pattern.matcher(value).replaceAll(replacement));
+                return ValString.create(regexMatcher.matcher(regex, value).replaceAll(replacement));
 
             } catch (final RuntimeException e) {
                 return ValErr.create(e.getMessage());
@@ -43,7 +43,12 @@ class Round extends AbstractRoundingFunction {
                 return ValNull.INSTANCE;
             }
 
-            return ValDouble.create(Math.round(val));
+            return ValDouble.create(calcDouble(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            return Math.round(value);
         }
     }
 
@@ -63,7 +68,12 @@ class Round extends AbstractRoundingFunction {
                 return ValNull.INSTANCE;
             }
 
-            return ValDouble.create(Math.round(val * multiplier) / multiplier);
+            return ValDouble.create(calcDouble(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            return Math.round(value * multiplier) / multiplier;
         }
     }
 }
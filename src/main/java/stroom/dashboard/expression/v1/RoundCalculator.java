@@ -20,4 +20,22 @@ import java.io.Serializable;
 
 public interface RoundCalculator extends Serializable {
     Val calc(Val value);
+
+    /**
+     * Primitive equivalent of calc() for a number.
+     *
+     * @return The rounded value or NaN if this calculator cannot round primitive doubles.
+     */
+    default double calcDouble(final double value) {
+        return Double.NaN;
+    }
+
+    /**
+     * Primitive equivalent of calc() for a number.
+     *
+     * @return The rounded value or Long.MIN_VALUE if this calculator cannot round primitive longs.
+     */
+    default long calcLong(final long value) {
+        return Long.MIN_VALUE;
+    }
 }
@@ -18,14 +18,18 @@ package stroom.dashboard.expression.v1;
 
 import java.text.ParseException;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.function.UnaryOperator;
 
 abstract class RoundDate extends AbstractFunction {
     private Function function;
+    private RoundCalculator calculator;
 
     public RoundDate(final String name) {
-        super(name, 1, 1);
+        super(name, 1, 2);
     }
 
     @Override
@@ -38,12 +42,22 @@ abstract class RoundDate extends AbstractFunction {
         } else {
             function = new StaticValueFunction((Val) param);
         }
+
+        // Round in local time if a time zone is supplied.
+        calculator = getCalculator();
+        final String timeZone = ParamParseUtil.parseStringParam(params, 1, name);
+        if (timeZone != null) {
+            final ZoneId zoneId = DateUtil.getTimeZone(timeZone);
+            if (!ZoneOffset.UTC.equals(zoneId.normalized())) {
+                calculator = new ZonedCalculator((RoundDateCalculator) calculator, zoneId);
+            }
+        }
     }
 
     @Override
     public Generator createGenerator() {
         final Generator childGenerator = function.createGenerator();
-        return new RoundGenerator(childGenerator, getCalculator());
+        return new RoundGenerator(childGenerator, calculator);
     }
 
     @Override
@@ -56,6 +70,14 @@ abstract class RoundDate extends AbstractFunction {
     public abstract static class RoundDateCalculator implements RoundCalculator {
         private static final long serialVersionUID = 1099553839843710283L;
 
+        // The largest magnitude at which every long can be converted to a double and back without loss.
+        private static final double MAX_EXACT_DOUBLE = 1L << 53;
+
+        static final long MILLIS_PER_SECOND = 1000L;
+        static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+        static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+        static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
         @Override
         public Val calc(final Val value) {
             final Long val = value.toLong();
@@ -63,11 +85,129 @@ abstract class RoundDate extends AbstractFunction {
                 return ValNull.INSTANCE;
             }
 
-            LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(val), ZoneOffset.UTC);
-            dateTime = adjust(dateTime);
-            return ValLong.create(dateTime.toInstant(ZoneOffset.UTC).toEpochMilli());
+            return ValLong.create(calcLong(val));
+        }
+
+        @Override
+        public double calcDouble(final double value) {
+            if (value < -MAX_EXACT_DOUBLE || value > MAX_EXACT_DOUBLE) {
+                return Double.NaN;
+            }
+            return calcLong((long) value);
+        }
+
+        @Override
+        public abstract long calcLong(long value);
+
+        static long floor(final long value, final long unit) {
+            return Math.floorDiv(value, unit) * unit;
+        }
+
+        static long ceiling(final long value, final long unit) {
+            final long floor = floor(value, unit);
+            return value > floor
+                    ? floor + unit
+                    : floor;
+        }
+
+        static long round(final long value, final long unit) {
+            final long floor = floor(value, unit);
+            return value > floor + (unit / 2)
+                    ? floor + unit
+                    : floor;
+        }
+
+        /**
+         * Round a value with java.time for calendar units outside of the years in the month table.
+         */
+        static long adjustDateTime(final long value, final UnaryOperator<LocalDateTime> adjuster) {
+            final LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneOffset.UTC);
+            return adjuster.apply(dateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+
+    /**
+     * Rounds values in the local time of a time zone, e.g. so that floorDay() gives the start of the local day.
+     */
+    static class ZonedCalculator extends RoundDateCalculator {
+        private static final long serialVersionUID = -2186745364386462751L;
+
+        private final RoundDateCalculator calculator;
+        private final ZoneId zoneId;
+
+        private transient ZoneTransitions zoneTransitions;
+
+        ZonedCalculator(final RoundDateCalculator calculator, final ZoneId zoneId) {
+            this.calculator = calculator;
+            this.zoneId = zoneId;
+        }
+
+        @Override
+        public long calcLong(final long value) {
+            if (zoneTransitions == null) {
+                zoneTransitions = ZoneTransitions.get(zoneId);
+            }
+
+            // Round the local time as if it were UTC and then convert the result back to an instant.
+            final long local = calculator.calcLong(zoneTransitions.toLocal(value));
+            return zoneTransitions.toInstant(local);
+        }
+    }
+
+    /**
+     * The start of each month in UTC between 1900 and 2200 so that values can be rounded to calendar units with a
+     * lookup rather than by creating date objects.
+     */
+    static final class MonthTable {
+        static final int NOT_IN_TABLE = -1;
+
+        private static final int FIRST_YEAR = 1900;
+        private static final int LAST_YEAR = 2200;
+        private static final long[] MONTH_STARTS = new long[((LAST_YEAR - FIRST_YEAR) * 12) + 1];
+        // The average length of a month in the Gregorian calendar, used to estimate the index of a month.
+        private static final long AVERAGE_MONTH_MILLIS = (146097L * RoundDateCalculator.MILLIS_PER_DAY) / (400 * 12);
+
+        static {
+            LocalDate date = LocalDate.of(FIRST_YEAR, 1, 1);
+            for (int i = 0; i < MONTH_STARTS.length; i++) {
+                MONTH_STARTS[i] = date.toEpochDay() * RoundDateCalculator.MILLIS_PER_DAY;
+                date = date.plusMonths(1);
+            }
+        }
+
+        private MonthTable() {
+            // Utility
+        }
+
+        /**
+         * @return The index of the month containing the value or {@link #NOT_IN_TABLE} if it is before 1900 or from
+         * 2200 onwards. The index of the first month of a year is always a multiple of 12 and there is always an
+         * entry for the start of the following year.
+         */
+        static int monthIndex(final long value) {
+            if (value < MONTH_STARTS[0] || value >= MONTH_STARTS[MONTH_STARTS.length - 1]) {
+                return NOT_IN_TABLE;
+            }
+
+            int index = (int) ((value - MONTH_STARTS[0]) / AVERAGE_MONTH_MILLIS);
+            if (index >= MONTH_STARTS.length - 1) {
+                index = MONTH_STARTS.length - 2;
+            }
+            while (MONTH_STARTS[index] > value) {
+                index--;
+            }
+            while (MONTH_STARTS[index + 1] <= value) {
+                index++;
+            }
+            return index;
         }
 
-        protected abstract LocalDateTime adjust(LocalDateTime dateTime);
+        static long monthStart(final int monthIndex) {
+            return MONTH_STARTS[monthIndex];
+        }
+
+        static int yearIndex(final int monthIndex) {
+            return monthIndex - (monthIndex % 12);
+        }
     }
 }
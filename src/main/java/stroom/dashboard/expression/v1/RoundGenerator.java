@@ -39,4 +39,22 @@ class RoundGenerator extends AbstractSingleChildGenerator {
         }
         return calculator.calc(val);
     }
+
+    @Override
+    public double evalDouble() {
+        final double val = childGenerator.evalDouble();
+        if (Double.isNaN(val)) {
+            return val;
+        }
+        return calculator.calcDouble(val);
+    }
+
+    @Override
+    public long evalLong() {
+        final long val = childGenerator.evalLong();
+        if (val == Long.MIN_VALUE) {
+            return val;
+        }
+        return calculator.calcLong(val);
+    }
 }
@@ -35,7 +35,17 @@ class RoundMonth extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
+        public long calcLong(final long value) {
+            final int month = MonthTable.monthIndex(value);
+            if (month == MonthTable.NOT_IN_TABLE) {
+                return adjustDateTime(value, this::adjust);
+            }
+            return value > MonthTable.monthStart(month) + (15 * MILLIS_PER_DAY)
+                    ? MonthTable.monthStart(month + 1)
+                    : MonthTable.monthStart(month);
+        }
+
+        private LocalDateTime adjust(final LocalDateTime dateTime) {
             LocalDateTime result = dateTime.toLocalDate().withDayOfMonth(1).atStartOfDay();
             if (dateTime.isAfter(result.plusDays(15))) {
                 result = result.plusMonths(1);
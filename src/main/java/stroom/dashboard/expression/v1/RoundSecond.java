@@ -16,9 +16,6 @@
 
 package stroom.dashboard.expression.v1;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-
 class RoundSecond extends RoundDate {
     static final String NAME = "roundSecond";
     private static final Calc CALC = new Calc();
@@ -36,12 +33,8 @@ class RoundSecond extends RoundDate {
         private static final long serialVersionUID = -5893918049538006730L;
 
         @Override
-        protected LocalDateTime adjust(final LocalDateTime dateTime) {
-            LocalDateTime result = dateTime.truncatedTo(ChronoUnit.SECONDS);
-            if (dateTime.isAfter(result.plusNanos(500000000))) {
-                result = result.plusSeconds(1);
-            }
-            return result;
+        public long calcLong(final long value) {
+            return round(value, MILLIS_PER_SECOND);
         }
     }
 }
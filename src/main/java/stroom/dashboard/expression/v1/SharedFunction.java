@@ -0,0 +1,220 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Map;
+
+/**
+ * Wraps a subtree that appears in more than one expression of an {@link ExpressionSet} so that generators created
+ * together by the set share a single generator for it. Generators created outside of a set get their own copy of
+ * the subtree.
+ */
+class SharedFunction implements Function, Appendable {
+    // The shared generators of the generator set being created on this thread.
+    private static final ThreadLocal<Gen[]> CREATING = new ThreadLocal<>();
+
+    private final Function function;
+    private final int slot;
+    private int consumerCount;
+
+    SharedFunction(final Function function, final int slot) {
+        this.function = function;
+        this.slot = slot;
+    }
+
+    static void startCreating(final Gen[] shared) {
+        CREATING.set(shared);
+    }
+
+    static void endCreating() {
+        CREATING.remove();
+    }
+
+    Function getFunction() {
+        return function;
+    }
+
+    void addConsumer() {
+        consumerCount++;
+    }
+
+    boolean isShared() {
+        return consumerCount > 1;
+    }
+
+    @Override
+    public void setParams(final Param[] params) throws ParseException {
+        function.setParams(params);
+    }
+
+    @Override
+    public void setStaticMappedValues(final Map<String, String> staticMappedValues) {
+        function.setStaticMappedValues(staticMappedValues);
+    }
+
+    @Override
+    public Generator createGenerator() {
+        final Gen[] shared = CREATING.get();
+        if (shared == null || !isShared()) {
+            return function.createGenerator();
+        }
+
+        Gen gen = shared[slot];
+        if (gen == null) {
+            gen = new Gen(function.createGenerator());
+            shared[slot] = gen;
+        }
+        return gen;
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return false;
+    }
+
+    @Override
+    public boolean hasAggregate() {
+        return false;
+    }
+
+    @Override
+    public void appendString(final StringBuilder sb) {
+        if (function instanceof Appendable) {
+            ((Appendable) function).appendString(sb);
+        } else {
+            sb.append(function.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        appendString(sb);
+        return sb.toString();
+    }
+
+    /**
+     * A generator that is referenced by several parents. While {@link GeneratorSet} is setting a row, or a block of
+     * rows, on the generators that share it the row is stamped on this generator so that parents get the value of
+     * the subtree without evaluating it again. Outside of that, e.g. when it is the root of an expression and is
+     * set directly, it behaves like any other generator.
+     */
+    static class Gen extends AbstractSingleChildGenerator {
+        private static final long serialVersionUID = -2874362839271640173L;
+
+        private transient Val value;
+
+        // The stamp of the row or block that the generator set is setting and the results for each row of the block.
+        private transient boolean rowStamped;
+        private transient ValBlock stampedBlock;
+        private transient double[] doubles;
+        private transient Val[] vals;
+
+        Gen(final Generator childGenerator) {
+            super(childGenerator);
+        }
+
+        void setShared(final Val[] values) {
+            childGenerator.set(values);
+            value = null;
+            rowStamped = true;
+        }
+
+        void setSharedBatch(final ValBlock block) {
+            final int size = block.size();
+            if (doubles == null || doubles.length < size) {
+                doubles = new double[size];
+                vals = new Val[size];
+            }
+            childGenerator.evalBatch(block, doubles, vals);
+            value = size > 0
+                    ? ValBlock.val(doubles, vals, size - 1)
+                    : null;
+            stampedBlock = block;
+        }
+
+        void clearShared() {
+            rowStamped = false;
+            stampedBlock = null;
+        }
+
+        @Override
+        public void set(final Val[] values) {
+            // Parents setting the stamped row don't need to set the subtree again.
+            if (!rowStamped) {
+                childGenerator.set(values);
+                value = null;
+            }
+        }
+
+        @Override
+        public Val eval() {
+            if (value == null) {
+                value = childGenerator.eval();
+            }
+            return value;
+        }
+
+        @Override
+        public void setBatch(final ValBlock block) {
+            if (block != stampedBlock) {
+                childGenerator.setBatch(block);
+                value = null;
+            }
+        }
+
+        @Override
+        public void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+            if (block == stampedBlock) {
+                System.arraycopy(this.doubles, 0, doubles, 0, block.size());
+                System.arraycopy(this.vals, 0, vals, 0, block.size());
+            } else {
+                childGenerator.evalBatch(block, doubles, vals);
+                value = null;
+            }
+        }
+
+        @Override
+        public void addChildKey(final Key key) {
+            // The subtree has no aggregates so doesn't use child keys.
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            // The subtree has no aggregates so there is nothing to merge.
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            value = null;
+            clearShared();
+        }
+
+        @Override
+        public long estimatedSizeInBytes() {
+            // The subtree is referenced by several parents so the generator set counts it once instead.
+            return SizeEstimates.GENERATOR;
+        }
+
+        long estimatedSharedSizeInBytes() {
+            return childGenerator.estimatedSizeInBytes();
+        }
+    }
+}
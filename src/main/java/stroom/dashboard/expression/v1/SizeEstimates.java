@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+/**
+ * Rough sizes of the objects that generators hold, assuming a 64 bit JVM with compressed references. These are
+ * used to estimate the memory held by generators without walking object graphs, so they only need to be close
+ * enough to compare against a memory budget.
+ */
+final class SizeEstimates {
+    static final int OBJECT_HEADER = 12;
+    static final int REFERENCE = 4;
+    static final int ARRAY_HEADER = 16;
+
+    /**
+     * The shallow size of a typical generator, i.e. the header and a few fields.
+     */
+    static final int GENERATOR = 24;
+
+    /**
+     * The size of an entry in a hash set or map including its share of the table at the default load factor.
+     */
+    static final int HASH_ENTRY = 40;
+
+    /**
+     * The size of an empty hash set, i.e. the set, its backing map and the initial table.
+     */
+    static final int HASH_SET = 16 + 48 + 80;
+
+    /**
+     * The size of an empty array list along with the default capacity backing array.
+     */
+    static final int ARRAY_LIST = 24 + 56;
+
+    private static final int STRING = 24;
+    private static final int VAL = 16;
+    private static final int VAL_WITH_PRIMITIVE = 24;
+
+    private SizeEstimates() {
+        // Utility class.
+    }
+
+    static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+
+    static long array(final int length, final int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+    static long string(final String string) {
+        if (string == null) {
+            return 0;
+        }
+        return STRING + array(string.length(), 2);
+    }
+
+    /**
+     * @param val The value to estimate the size of.
+     * @return The size of the value and any string it holds or zero for shared instances such as null.
+     */
+    static long val(final Val val) {
+        if (val == null || val instanceof ValNull || val instanceof ValBoolean) {
+            return 0;
+        } else if (val instanceof ValString) {
+            return VAL + string(val.toString());
+        } else if (val instanceof ValErr) {
+            return VAL + string(((ValErr) val).getMessage());
+        } else if (val instanceof ValLong || val instanceof ValDouble) {
+            return VAL_WITH_PRIMITIVE;
+        }
+        return VAL;
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A normalised form of a value that can be compared without converting or parsing anything. Sorting generators on
+ * keys created once for each generator is much cheaper than sorting the generators themselves, as comparing two
+ * generators evaluates both and may parse string values as numbers for every comparison.
+ * <p>
+ * Keys are ordered in the same way as {@link ValComparator}:
+ * <ul>
+ * <li>Values that have a numeric form, i.e. numbers, booleans and numeric or date strings, are ordered by that
+ * number. Longs that only differ beyond the precision of a double are ordered by their exact value.</li>
+ * <li>Other strings are ordered ignoring case as with {@link String#compareToIgnoreCase(String)}.</li>
+ * <li>Null values and errors are ordered after everything else, apart from missing values, i.e. Java nulls, which are
+ * ordered last.</li>
+ * </ul>
+ * ValComparator compares a number with a non-numeric string by their string forms, which does not give a consistent
+ * order for a mix of both, e.g. "2" &lt; "15" &lt; "1a" &lt; "2". Keys always order numbers before non-numeric strings
+ * instead, which is what ValComparator does for most strings. Similarly, infinite and NaN doubles are ordered with
+ * other numbers rather than being treated as equal to null values.
+ */
+public final class SortKey implements Comparable<SortKey> {
+    private static final int NUMBER = 0;
+    private static final int STRING = 1;
+    private static final int NULL = 2;
+    private static final int MISSING = 3;
+
+    private static final SortKey NULL_KEY = new SortKey(NULL, 0, 0, null);
+    private static final SortKey MISSING_KEY = new SortKey(MISSING, 0, 0, null);
+
+    // Below this many generators a comparison sort is quicker than a radix sort.
+    private static final int RADIX_SORT_THRESHOLD = 1 << 12;
+    private static final int RADIX_BITS = 16;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private final int kind;
+    // Compared as unsigned. For numbers this is the whole double, for strings it holds the first four characters.
+    private final long prefix;
+    // For longs, the difference from the long value of the double so that longs too big to be held exactly by a
+    // double are still ordered by their exact value.
+    private final long remainder;
+    private final String string;
+
+    private SortKey(final int kind, final long prefix, final long remainder, final String string) {
+        this.kind = kind;
+        this.prefix = prefix;
+        this.remainder = remainder;
+        this.string = string;
+    }
+
+    /**
+     * @param val The value to create a key for, which may be null.
+     * @return A key for the value.
+     */
+    public static SortKey create(final Val val) {
+        if (val == null) {
+            return MISSING_KEY;
+        }
+        if (!val.type().isValue()) {
+            return NULL_KEY;
+        }
+
+        if (val instanceof ValNumber) {
+            final double d = ((ValNumber) val).doubleValue();
+            final long remainder = val instanceof ValLong
+                    ? ((ValLong) val).longValue() - (long) d
+                    : 0;
+            return new SortKey(NUMBER, sortableBits(d), remainder, null);
+        }
+
+        final String string = val.toString();
+        if (string == null) {
+            return NULL_KEY;
+        }
+        final Double d = val.toDouble();
+        if (d != null) {
+            return new SortKey(NUMBER, sortableBits(d), 0, null);
+        }
+        final String folded = foldCase(string);
+        return new SortKey(STRING, packPrefix(folded, 0), 0, folded);
+    }
+
+    /**
+     * Sort generators by their current values without evaluating each generator more than once. The sort is stable
+     * so generators with equal values keep their order.
+     *
+     * @param generators The generators to sort.
+     */
+    public static <T extends Generator> void sort(final T[] generators) {
+        final SortKey[] keys = new SortKey[generators.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = generators[i].sortKey();
+        }
+        final int[] order = sortOrder(keys);
+        final T[] unsorted = generators.clone();
+        for (int i = 0; i < order.length; i++) {
+            generators[i] = unsorted[order[i]];
+        }
+    }
+
+    /**
+     * Sort generators by their current values without evaluating each generator more than once. The sort is stable
+     * so generators with equal values keep their order.
+     *
+     * @param generators The generators to sort.
+     */
+    public static <T extends Generator> void sort(final List<T> generators) {
+        final SortKey[] keys = new SortKey[generators.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = generators.get(i).sortKey();
+        }
+        final int[] order = sortOrder(keys);
+        final List<T> unsorted = new ArrayList<>(generators);
+        for (int i = 0; i < order.length; i++) {
+            generators.set(i, unsorted.get(order[i]));
+        }
+    }
+
+    /**
+     * @return The index of each key in sorted order.
+     */
+    static int[] sortOrder(final SortKey[] keys) {
+        if (keys.length < RADIX_SORT_THRESHOLD) {
+            final int[] order = new int[keys.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            sortRun(keys, order, 0, order.length);
+            return order;
+        }
+
+        // Group keys by kind, keeping their order within each kind.
+        final int[] kindStarts = new int[MISSING + 2];
+        for (final SortKey key : keys) {
+            kindStarts[key.kind + 1]++;
+        }
+        for (int kind = 0; kind <= MISSING; kind++) {
+            kindStarts[kind + 1] += kindStarts[kind];
+        }
+
+        // All strings can be ordered by the characters after the start that they have in common, and if all of the
+        // characters fit in a byte then twice as many of them can be packed into a radix key.
+        final int offset = commonStringPrefixLength(keys);
+        final boolean latin1 = isLatin1(keys);
+        final int[] positions = kindStarts.clone();
+        final int[] order = new int[keys.length];
+        final long[] radixKeys = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            final SortKey key = keys[i];
+            final int position = positions[key.kind]++;
+            order[position] = i;
+            if (key.kind == STRING) {
+                radixKeys[position] = latin1
+                        ? packLatin1Prefix(key.string, offset)
+                        : packPrefix(key.string, offset);
+            } else {
+                radixKeys[position] = key.prefix;
+            }
+        }
+
+        for (int kind = NUMBER; kind <= STRING; kind++) {
+            final int from = kindStarts[kind];
+            final int to = kindStarts[kind + 1];
+            radixSort(radixKeys, order, from, to);
+
+            // Compare keys where the radix keys alone do not decide the order.
+            int runStart = from;
+            for (int i = from + 1; i <= to; i++) {
+                if (i == to || radixKeys[i] != radixKeys[runStart]) {
+                    if (i - runStart > 1) {
+                        sortRun(keys, order, runStart, i);
+                    }
+                    runStart = i;
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int commonStringPrefixLength(final SortKey[] keys) {
+        String first = null;
+        int length = 0;
+        for (final SortKey key : keys) {
+            if (key.kind == STRING) {
+                if (first == null) {
+                    first = key.string;
+                    length = first.length();
+                } else {
+                    final String string = key.string;
+                    length = Math.min(length, string.length());
+                    int i = 0;
+                    while (i < length && string.charAt(i) == first.charAt(i)) {
+                        i++;
+                    }
+                    length = i;
+                }
+            }
+        }
+        return length;
+    }
+
+    private static boolean isLatin1(final SortKey[] keys) {
+        for (final SortKey key : keys) {
+            if (key.kind == STRING) {
+                final String string = key.string;
+                for (int i = 0; i < string.length(); i++) {
+                    if (string.charAt(i) > 0xFF) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A stable least significant digit radix sort of part of the radix keys, treating them as unsigned, that moves
+     * the key indices in the same way.
+     */
+    private static void radixSort(final long[] radixKeys, final int[] order, final int from, final int to) {
+        final int length = to - from;
+        if (length < 2) {
+            return;
+        }
+
+        long[] values = Arrays.copyOfRange(radixKeys, from, to);
+        int[] indices = Arrays.copyOfRange(order, from, to);
+        long[] sortedValues = new long[length];
+        int[] sortedIndices = new int[length];
+        final int[] counts = new int[RADIX_MASK + 1];
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < length; i++) {
+                counts[(int) (values[i] >>> shift) & RADIX_MASK]++;
+            }
+            // Skip digits that are the same for every key.
+            if (counts[(int) (values[0] >>> shift) & RADIX_MASK] == length) {
+                continue;
+            }
+
+            int position = 0;
+            for (int digit = 0; digit <= RADIX_MASK; digit++) {
+                final int count = counts[digit];
+                counts[digit] = position;
+                position += count;
+            }
+            for (int i = 0; i < length; i++) {
+                final int index = counts[(int) (values[i] >>> shift) & RADIX_MASK]++;
+                sortedValues[index] = values[i];
+                sortedIndices[index] = indices[i];
+            }
+
+            final long[] swapValues = values;
+            values = sortedValues;
+            sortedValues = swapValues;
+            final int[] swapIndices = indices;
+            indices = sortedIndices;
+            sortedIndices = swapIndices;
+        }
+
+        System.arraycopy(values, 0, radixKeys, from, length);
+        System.arraycopy(indices, 0, order, from, length);
+    }
+
+    /**
+     * A stable comparison sort of part of the key indices.
+     */
+    private static void sortRun(final SortKey[] keys, final int[] order, final int from, final int to) {
+        final Entry[] entries = new Entry[to - from];
+        for (int i = 0; i < entries.length; i++) {
+            final int index = order[from + i];
+            entries[i] = new Entry(keys[index], index);
+        }
+        Arrays.sort(entries);
+        for (int i = 0; i < entries.length; i++) {
+            order[from + i] = entries[i].index;
+        }
+    }
+
+    /**
+     * Map a double to a long that orders as unsigned in the same way as {@link Double#compare(double, double)},
+     * i.e. with -0.0 before 0.0 and NaN after everything else.
+     */
+    private static long sortableBits(final double d) {
+        final long bits = Double.doubleToLongBits(d);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    /**
+     * Pack four characters of a string from an offset into a long that orders as unsigned in the same way as the
+     * rest of the string.
+     */
+    private static long packPrefix(final String string, final int offset) {
+        long prefix = 0;
+        for (int i = offset; i < offset + 4; i++) {
+            prefix <<= Character.SIZE;
+            if (i < string.length()) {
+                prefix |= string.charAt(i);
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * As packPrefix() but for strings of characters that all fit in a byte, so eight characters are packed.
+     */
+    private static long packLatin1Prefix(final String string, final int offset) {
+        long prefix = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            prefix <<= Byte.SIZE;
+            if (i < string.length()) {
+                prefix |= string.charAt(i);
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Fold the case of each character in the same way as {@link String#compareToIgnoreCase(String)} so that
+     * folded strings can be compared with {@link String#compareTo(String)}.
+     */
+    private static String foldCase(final String string) {
+        final int length = string.length();
+        int i = 0;
+        while (i < length) {
+            final char c = string.charAt(i);
+            if (c >= 128 ? fold(c) != c : c >= 'A' && c <= 'Z') {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return string;
+        }
+
+        final char[] chars = string.toCharArray();
+        for (; i < length; i++) {
+            final char c = chars[i];
+            if (c < 128) {
+                if (c >= 'A' && c <= 'Z') {
+                    chars[i] = (char) (c + ('a' - 'A'));
+                }
+            } else {
+                chars[i] = fold(c);
+            }
+        }
+        return new String(chars);
+    }
+
+    private static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    @Override
+    public int compareTo(final SortKey o) {
+        if (kind != o.kind) {
+            return Integer.compare(kind, o.kind);
+        }
+        final int result = Long.compareUnsigned(prefix, o.prefix);
+        if (result != 0) {
+            return result;
+        }
+        if (kind == NUMBER) {
+            return Long.compare(remainder, o.remainder);
+        }
+        if (kind == STRING) {
+            return string.compareTo(o.string);
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final SortKey sortKey = (SortKey) o;
+        return kind == sortKey.kind &&
+                prefix == sortKey.prefix &&
+                remainder == sortKey.remainder &&
+                Objects.equals(string, sortKey.string);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, prefix, remainder, string);
+    }
+
+    /**
+     * A key and its original position with the kind and prefix copied so that most comparisons only read the entry.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final int kind;
+        private final long prefix;
+        private final SortKey key;
+        private final int index;
+
+        Entry(final SortKey key, final int index) {
+            this.kind = key.kind;
+            this.prefix = key.prefix;
+            this.key = key;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(final Entry o) {
+            if (kind != o.kind) {
+                return Integer.compare(kind, o.kind);
+            }
+            final int result = Long.compareUnsigned(prefix, o.prefix);
+            if (result != 0) {
+                return result;
+            }
+            return key.compareTo(o.key);
+        }
+    }
+}
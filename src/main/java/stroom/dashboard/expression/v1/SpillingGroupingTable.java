@@ -0,0 +1,316 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Groups rows like {@link GroupingTable} but limits the number of groups, and the estimated bytes, held in memory
+ * by writing groups to temporary files. Groups are split into partitions by the hash of their key. When there are
+ * more groups in memory than the budget allows the partition with the most groups in memory is written to its file
+ * as a run and emptied. When the estimated size of the tables, see {@link GroupingTable#estimatedSizeInBytes()},
+ * is over budget the partitions with the largest estimates are written until it is within budget. Rows for groups
+ * that were written continue to be grouped in memory and the runs are merged back with
+ * {@link Generator#merge(Generator)} when the results are read, one partition at a time.
+ * <p>
+ * A table is not thread safe and must be closed to delete its files.
+ */
+public final class SpillingGroupingTable implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillingGroupingTable.class);
+
+    private static final int DEFAULT_PARTITION_BITS = 4;
+
+    private final ExpressionSet keyExpressions;
+    private final ExpressionSet valueExpressions;
+    private final int maxGroupsInMemory;
+    private final long maxBytesInMemory;
+    private final Path directory;
+    private Path tempDirectory;
+    private final GeneratorSet keyGenerators;
+    private final Val[] keyValues;
+    private final int partitionShift;
+    private final Partition[] partitions;
+    private int groupsInMemory;
+    private long bytesInMemory;
+    private long spilledGroupCount;
+
+    /**
+     * @param keyExpressions    The expressions whose values identify the group of a row. These must not contain
+     *                          aggregate functions.
+     * @param valueExpressions  The expressions to evaluate for each group.
+     * @param maxGroupsInMemory The number of groups to hold in memory before writing some of them to files.
+     * @param directory         The directory to create files in or null for the default temporary directory.
+     */
+    public SpillingGroupingTable(final ExpressionSet keyExpressions,
+                                 final ExpressionSet valueExpressions,
+                                 final int maxGroupsInMemory,
+                                 final Path directory) {
+        this(keyExpressions, valueExpressions, maxGroupsInMemory, directory, DEFAULT_PARTITION_BITS);
+    }
+
+    /**
+     * @param keyExpressions    The expressions whose values identify the group of a row. These must not contain
+     *                          aggregate functions.
+     * @param valueExpressions  The expressions to evaluate for each group.
+     * @param maxGroupsInMemory The number of groups to hold in memory before writing some of them to files.
+     * @param directory         The directory to create files in or null for the default temporary directory.
+     * @param partitionBits     The number of bits of the key hash that select a partition, so there are
+     *                          2^partitionBits partitions. Each partition must fit in memory once its runs are
+     *                          merged.
+     */
+    public SpillingGroupingTable(final ExpressionSet keyExpressions,
+                                 final ExpressionSet valueExpressions,
+                                 final int maxGroupsInMemory,
+                                 final Path directory,
+                                 final int partitionBits) {
+        this(keyExpressions, valueExpressions, maxGroupsInMemory, Long.MAX_VALUE, directory, partitionBits);
+    }
+
+    /**
+     * @param keyExpressions    The expressions whose values identify the group of a row. These must not contain
+     *                          aggregate functions.
+     * @param valueExpressions  The expressions to evaluate for each group.
+     * @param maxGroupsInMemory The number of groups to hold in memory before writing some of them to files.
+     * @param maxBytesInMemory  The estimated number of bytes of groups to hold in memory before writing some of them
+     *                          to files.
+     * @param directory         The directory to create files in or null for the default temporary directory.
+     * @param partitionBits     The number of bits of the key hash that select a partition, so there are
+     *                          2^partitionBits partitions. Each partition must fit in memory once its runs are
+     *                          merged.
+     */
+    public SpillingGroupingTable(final ExpressionSet keyExpressions,
+                                 final ExpressionSet valueExpressions,
+                                 final int maxGroupsInMemory,
+                                 final long maxBytesInMemory,
+                                 final Path directory,
+                                 final int partitionBits) {
+        if (maxGroupsInMemory < 1) {
+            throw new IllegalArgumentException("The maximum number of groups in memory must be at least 1");
+        }
+        if (maxBytesInMemory < 1) {
+            throw new IllegalArgumentException("The maximum number of bytes in memory must be at least 1");
+        }
+        if (partitionBits < 0 || partitionBits > 16) {
+            throw new IllegalArgumentException("Partition bits must be between 0 and 16");
+        }
+
+        this.keyExpressions = keyExpressions;
+        this.valueExpressions = valueExpressions;
+        this.maxGroupsInMemory = maxGroupsInMemory;
+        this.maxBytesInMemory = maxBytesInMemory;
+        this.directory = directory;
+        keyGenerators = keyExpressions.createGenerators();
+        keyValues = new Val[keyExpressions.size()];
+
+        // Use the high bits of the hash to pick a partition as the tables use the low bits to pick a slot.
+        partitionShift = Integer.SIZE - partitionBits;
+        partitions = new Partition[1 << partitionBits];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(new GroupingTable(keyExpressions, valueExpressions));
+            bytesInMemory += partitions[i].table.estimatedSizeInBytes();
+        }
+    }
+
+    /**
+     * Add a row to the group it belongs to.
+     *
+     * @param values The data values of the row.
+     * @throws IOException If groups could not be written to a file.
+     */
+    public void add(final Val[] values) throws IOException {
+        GroupingTable.evaluateKey(keyGenerators, values, keyValues);
+        final int hash = GroupKey.hash(keyValues);
+        final GroupingTable table = partitions[partitionIndex(hash)].table;
+        final int size = table.size();
+        final long bytes = table.estimatedSizeInBytes();
+        table.add(keyValues, hash, values);
+        groupsInMemory += table.size() - size;
+        bytesInMemory += table.estimatedSizeInBytes() - bytes;
+
+        if (groupsInMemory > maxGroupsInMemory) {
+            spill(largestPartition(false));
+        }
+        while (bytesInMemory > maxBytesInMemory) {
+            final Partition largest = largestPartition(true);
+            if (largest.table.size() == 0) {
+                // Only empty tables are left.
+                break;
+            }
+            spill(largest);
+        }
+    }
+
+    private int partitionIndex(final int hash) {
+        return partitions.length == 1
+                ? 0
+                : hash >>> partitionShift;
+    }
+
+    private Partition largestPartition(final boolean bytes) {
+        Partition largest = partitions[0];
+        for (final Partition partition : partitions) {
+            final boolean larger = bytes
+                    ? partition.table.estimatedSizeInBytes() > largest.table.estimatedSizeInBytes()
+                    : partition.table.size() > largest.table.size();
+            if (larger) {
+                largest = partition;
+            }
+        }
+        return largest;
+    }
+
+    private void spill(final Partition largest) throws IOException {
+        final GroupingTable table = largest.table;
+        if (largest.file == null) {
+            Path dir = directory;
+            if (dir == null) {
+                if (tempDirectory == null) {
+                    tempDirectory = Files.createTempDirectory("grouping");
+                }
+                dir = tempDirectory;
+            }
+            largest.file = Files.createTempFile(dir, "grouping", ".run");
+        }
+        try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(largest.file, StandardOpenOption.APPEND)))) {
+            final GeneratorOutput output = new GeneratorOutput(outputStream);
+            output.writeSize(table.size());
+            for (int i = 0; i < table.size(); i++) {
+                final GroupKey key = table.getKey(i);
+                for (int j = 0; j < key.size(); j++) {
+                    output.writeVal(key.get(j));
+                }
+                table.getGenerators(i).write(output);
+            }
+        }
+
+        LOGGER.debug("Wrote {} groups to {}", table.size(), largest.file);
+        largest.runCount++;
+        groupsInMemory -= table.size();
+        spilledGroupCount += table.size();
+        largest.table = new GroupingTable(keyExpressions, valueExpressions);
+        bytesInMemory += largest.table.estimatedSizeInBytes() - table.estimatedSizeInBytes();
+    }
+
+    /**
+     * Merge the runs of each partition with the groups still in memory and pass the resulting table of each
+     * partition to the consumer in turn. State is merged in the order rows were added, i.e. the runs in the order
+     * they were written followed by the groups still in memory, so that generators that depend on the order of
+     * rows, e.g. joining(), give the same result whether or not groups were written to files. The groups of different
+     * partitions are distinct. Only one partition that was written to a file is read back into memory at a time. This
+     * can only be called once and no more rows can be added afterwards.
+     *
+     * @param consumer The consumer of the table of each partition.
+     * @throws IOException If groups could not be read from a file.
+     */
+    public void forEachPartition(final Consumer<GroupingTable> consumer) throws IOException {
+        for (final Partition partition : partitions) {
+            GroupingTable table = partition.table;
+            if (partition.file != null) {
+                table = new GroupingTable(keyExpressions, valueExpressions);
+                try (final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(partition.file)))) {
+                    for (int run = 0; run < partition.runCount; run++) {
+                        final GeneratorInput input = new GeneratorInput(inputStream);
+                        final int groupCount = input.readSize();
+                        for (int i = 0; i < groupCount; i++) {
+                            final Val[] values = new Val[keyValues.length];
+                            for (int j = 0; j < values.length; j++) {
+                                values[j] = input.readVal();
+                            }
+                            final GeneratorSet generators = valueExpressions.createGenerators();
+                            generators.read(input);
+                            table.merge(new GroupKey(values, GroupKey.hash(values)), generators);
+                        }
+                    }
+                }
+                deleteFile(partition);
+
+                final GroupingTable inMemory = partition.table;
+                for (int i = 0; i < inMemory.size(); i++) {
+                    table.merge(inMemory.getKey(i), inMemory.getGenerators(i));
+                }
+            }
+            partition.table = null;
+            consumer.accept(table);
+        }
+    }
+
+    /**
+     * @return The number of groups currently held in memory.
+     */
+    public int getGroupsInMemory() {
+        return groupsInMemory;
+    }
+
+    /**
+     * @return The estimated number of bytes of the groups currently held in memory, including the empty tables of
+     * partitions.
+     */
+    public long getBytesInMemory() {
+        return bytesInMemory;
+    }
+
+    /**
+     * @return The number of groups that have been written to files, counting a group each time it is written.
+     */
+    public long getSpilledGroupCount() {
+        return spilledGroupCount;
+    }
+
+    /**
+     * Delete any files that are left.
+     */
+    @Override
+    public void close() throws IOException {
+        for (final Partition partition : partitions) {
+            deleteFile(partition);
+        }
+        if (tempDirectory != null) {
+            Files.deleteIfExists(tempDirectory);
+            tempDirectory = null;
+        }
+    }
+
+    private static void deleteFile(final Partition partition) throws IOException {
+        if (partition.file != null) {
+            Files.deleteIfExists(partition.file);
+            partition.file = null;
+        }
+    }
+
+    private static final class Partition {
+        private GroupingTable table;
+        private Path file;
+        private int runCount;
+
+        Partition(final GroupingTable table) {
+            this.table = table;
+        }
+    }
+}
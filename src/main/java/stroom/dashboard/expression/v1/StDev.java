@@ -16,10 +16,8 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 class StDev extends AbstractManyChildFunction implements AggregateFunction {
     static final String NAME = "stDev";
@@ -64,7 +62,7 @@ class StDev extends AbstractManyChildFunction implements AggregateFunction {
     private static class AggregateGen extends AbstractSingleChildGenerator {
         private static final long serialVersionUID = -6770724151493320673L;
 
-        private final List<Double> list = Collections.synchronizedList(new ArrayList<>());
+        private final Statistics statistics = new Statistics();
 
         AggregateGen(final Generator childGenerator) {
             super(childGenerator);
@@ -73,34 +71,43 @@ class StDev extends AbstractManyChildFunction implements AggregateFunction {
         @Override
         public void set(final Val[] values) {
             childGenerator.set(values);
-            final Double d = childGenerator.eval().toDouble();
-            if (d != null) {
-                list.add(d);
+            final double d = childGenerator.evalDouble();
+            if (!Double.isNaN(d)) {
+                statistics.add(d);
+            } else {
+                final Double value = childGenerator.eval().toDouble();
+                if (value != null) {
+                    statistics.add(value);
+                }
             }
         }
 
         @Override
         public Val eval() {
-            if (list.size() == 0) {
+            if (statistics.getCount() == 0) {
                 return ValNull.INSTANCE;
             }
-
-            // Isolate list.
-            Double[] arr;
-            synchronized (list) {
-                arr = list.toArray(new Double[0]);
-            }
-
-            // calculate variance
-            return ValDouble.create(Statistics.standardDeviation(arr));
+            return ValDouble.create(statistics.standardDeviation());
         }
 
         @Override
         public void merge(final Generator generator) {
             final AggregateGen aggregateGen = (AggregateGen) generator;
-            list.addAll(aggregateGen.list);
+            statistics.merge(aggregateGen.statistics);
             super.merge(generator);
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            statistics.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            statistics.read(input);
+        }
     }
 
     private static class Gen extends AbstractManyChildGenerator {
@@ -119,7 +126,7 @@ class StDev extends AbstractManyChildFunction implements AggregateFunction {
 
         @Override
         public Val eval() {
-            final List<Double> list = new ArrayList<>(childGenerators.length);
+            final Statistics statistics = new Statistics();
             for (final Generator gen : childGenerators) {
                 final Val val = gen.eval();
                 if (!val.type().isValue()) {
@@ -127,19 +134,14 @@ class StDev extends AbstractManyChildFunction implements AggregateFunction {
                 }
                 final Double value = val.toDouble();
                 if (value != null) {
-                    list.add(value);
+                    statistics.add(value);
                 }
             }
 
-            if (list.size() == 0) {
+            if (statistics.getCount() == 0) {
                 return ValNull.INSTANCE;
             }
-
-            // Isolate list.
-            final Double[] arr = list.toArray(new Double[0]);
-
-            // calculate variance
-            return ValDouble.create(Statistics.standardDeviation(arr));
+            return ValDouble.create(statistics.standardDeviation());
         }
     }
 }
@@ -16,14 +16,26 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.util.Arrays;
 import java.util.Map;
 
 public class StaticValueFunction implements Function, Appendable {
     private final Val value;
+    private final Function function;
     private final Generator gen;
 
     public StaticValueFunction(final Val value) {
+        this(value, null);
+    }
+
+    /**
+     * @param value    The value of the function.
+     * @param function The constant function that the value was evaluated from, if any, so that the function rather
+     *                 than its value appears in the expression string.
+     */
+    StaticValueFunction(final Val value, final Function function) {
         this.value = value;
+        this.function = function;
         this.gen = new Gen(value);
     }
 
@@ -51,7 +63,13 @@ public class StaticValueFunction implements Function, Appendable {
 
     @Override
     public void appendString(final StringBuilder sb) {
-        value.appendString(sb);
+        if (function instanceof Appendable) {
+            ((Appendable) function).appendString(sb);
+        } else if (function != null) {
+            sb.append(function.toString());
+        } else {
+            value.appendString(sb);
+        }
     }
 
     @Override
@@ -76,9 +94,36 @@ public class StaticValueFunction implements Function, Appendable {
             this.value = value;
         }
 
+        @Override
+        public void setBatch(final ValBlock block) {
+            // Ignore
+        }
+
         @Override
         public Val eval() {
             return value;
         }
+
+        @Override
+        public void evalBatch(final ValBlock block, final double[] doubles, final Val[] vals) {
+            Arrays.fill(doubles, 0, block.size(), evalDouble());
+            Arrays.fill(vals, 0, block.size(), value);
+        }
+
+        @Override
+        public double evalDouble() {
+            if (value instanceof ValNumber) {
+                return ((ValNumber) value).doubleValue();
+            }
+            return Double.NaN;
+        }
+
+        @Override
+        public long evalLong() {
+            if (value instanceof ValNumber) {
+                return ((ValNumber) value).longValue();
+            }
+            return Long.MIN_VALUE;
+        }
     }
 }
@@ -1,28 +1,86 @@
 package stroom.dashboard.expression.v1;
 
-class Statistics {
-    static double standardDeviation(final Double[] values) {
-        return Math.sqrt(variance(values));
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Accumulates the count, sum and sum of squares of a stream of values so that the variance can be calculated
+ * without keeping the values. The sums are of the differences from the first value seen (the shift) rather than
+ * of the values themselves so that the calculation stays accurate when the values are large compared to their
+ * spread. Partial results with different shifts are combined by moving one onto the shift of the other so the
+ * state stays the same size however many values or merges there are.
+ */
+class Statistics implements Serializable {
+    private static final long serialVersionUID = -2403839526418823254L;
+
+    private long count;
+    private double shift;
+    private double sum;
+    private double sumOfSquares;
+
+    synchronized void add(final double value) {
+        if (count == 0) {
+            shift = value;
+        }
+        final double diff = value - shift;
+        count++;
+        sum += diff;
+        sumOfSquares += diff * diff;
     }
 
-    static double variance(final Double[] values) {
-        if (values.length == 0) {
-            return 0;
+    synchronized void merge(final Statistics statistics) {
+        final long otherCount;
+        final double otherShift;
+        final double otherSum;
+        final double otherSumOfSquares;
+        synchronized (statistics) {
+            otherCount = statistics.count;
+            otherShift = statistics.shift;
+            otherSum = statistics.sum;
+            otherSumOfSquares = statistics.sumOfSquares;
         }
-        // Calculate mean
-        double total = 0;
-        for (final double d : values) {
-            total += d;
+
+        if (otherCount == 0) {
+            return;
         }
-        final double mean = total / values.length;
-        // calculate squared differences.
-        double sqTotal = 0;
-        for (final double d : values) {
-            final double diff = d - mean;
-            final double sq = diff * diff;
-            sqTotal += sq;
+        if (count == 0) {
+            shift = otherShift;
         }
-        // calculate variance
-        return sqTotal / values.length;
+
+        // Move the other sums onto our shift before adding them.
+        final double diff = otherShift - shift;
+        count += otherCount;
+        sum += otherSum + otherCount * diff;
+        sumOfSquares += otherSumOfSquares + 2 * diff * otherSum + otherCount * diff * diff;
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    synchronized double variance() {
+        if (count == 0) {
+            return 0;
+        }
+        // Rounding can make the result very slightly negative when all of the values are the same.
+        return Math.max(0, (sumOfSquares - (sum * sum) / count) / count);
+    }
+
+    double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    synchronized void write(final GeneratorOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeDouble(shift);
+        output.writeDouble(sum);
+        output.writeDouble(sumOfSquares);
+    }
+
+    synchronized void read(final GeneratorInput input) throws IOException {
+        count = input.readLong();
+        shift = input.readDouble();
+        sum = input.readDouble();
+        sumOfSquares = input.readDouble();
     }
 }
@@ -17,10 +17,119 @@
 package stroom.dashboard.expression.v1;
 
 final class StringUtil {
+    /**
+     * The result of {@link #classifyNumber(String)} for a string that cannot be a number.
+     */
+    static final int NOT_NUMBER = 0;
+    /**
+     * The result of {@link #classifyNumber(String)} for a string of ASCII digits with an optional sign.
+     */
+    static final int INTEGER = 1;
+    /**
+     * The result of {@link #classifyNumber(String)} for a string that may be a decimal, e.g. 1.5 or 1e3.
+     */
+    static final int DECIMAL = 2;
+    /**
+     * The result of {@link #classifyNumber(String)} for a string with non ASCII characters that need the JDK parsers
+     * to decide if they are digits.
+     */
+    static final int UNKNOWN = 3;
+
+    // The most digits an integer can have and still be parsed into a long without overflowing.
+    private static final int MAX_SAFE_LONG_DIGITS = 18;
+    // The most digits an integer can have and still be represented exactly by a double.
+    private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+
     private StringUtil() {
         // Utility class
     }
 
+    /**
+     * Decide from its characters alone whether a string could be parsed as a number so that values that are not
+     * numbers can be rejected without the cost of the JDK parsers throwing an exception.
+     *
+     * @param string The string to classify.
+     * @return {@link #NOT_NUMBER}, {@link #INTEGER}, {@link #DECIMAL} or {@link #UNKNOWN}.
+     */
+    static int classifyNumber(final String string) {
+        final int length = string.length();
+        int i = 0;
+        if (length > 0 && (string.charAt(0) == '-' || string.charAt(0) == '+')) {
+            i++;
+        }
+
+        boolean integer = true;
+        boolean digits = false;
+        boolean point = false;
+        boolean exponent = false;
+        for (; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == '.' && !point && !exponent) {
+                point = true;
+                integer = false;
+            } else if ((c == 'e' || c == 'E') && digits && !exponent) {
+                exponent = true;
+                integer = false;
+                digits = false;
+                if (i + 1 < length && (string.charAt(i + 1) == '-' || string.charAt(i + 1) == '+')) {
+                    i++;
+                }
+            } else if (c > 127) {
+                return UNKNOWN;
+            } else {
+                return NOT_NUMBER;
+            }
+        }
+
+        if (!digits) {
+            return NOT_NUMBER;
+        }
+        return integer
+                ? INTEGER
+                : DECIMAL;
+    }
+
+    /**
+     * Parse a string that {@link #classifyNumber(String)} classified as an integer.
+     *
+     * @return The value or null if it is too big for a long.
+     */
+    static Long parseInteger(final String string) {
+        final boolean signed = string.charAt(0) == '-' || string.charAt(0) == '+';
+        final int digitCount = signed
+                ? string.length() - 1
+                : string.length();
+        if (digitCount > MAX_SAFE_LONG_DIGITS) {
+            try {
+                return Long.parseLong(string);
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+
+        long value = 0;
+        for (int i = signed ? 1 : 0; i < string.length(); i++) {
+            value = (value * 10) + (string.charAt(i) - '0');
+        }
+        return string.charAt(0) == '-'
+                ? -value
+                : value;
+    }
+
+    /**
+     * @return True if a string that {@link #classifyNumber(String)} classified as an integer can be converted to a
+     * double exactly via a long.
+     */
+    static boolean isExactDouble(final String string) {
+        final boolean signed = string.charAt(0) == '-' || string.charAt(0) == '+';
+        final int digitCount = signed
+                ? string.length() - 1
+                : string.length();
+        return digitCount <= MAX_EXACT_DOUBLE_DIGITS;
+    }
+
     static String escape(final String string) {
         return "'" + string.replaceAll("'", "''") + "'";
     }
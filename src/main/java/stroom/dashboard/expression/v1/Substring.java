@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.ParseException;
 
@@ -162,5 +163,19 @@ class Substring extends AbstractFunction implements Serializable {
             }
             return ValString.create(value.substring(start, end));
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            startPosGenerator.write(output);
+            endPosGenerator.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            startPosGenerator.read(input);
+            endPosGenerator.read(input);
+        }
     }
 }
@@ -16,6 +16,7 @@
 
 package stroom.dashboard.expression.v1;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.ParseException;
 
@@ -117,5 +118,17 @@ class SubstringAfter extends AbstractFunction implements Serializable {
 
             return ValString.create(value.substring(index + str.length()));
         }
+
+        @Override
+        public void write(final GeneratorOutput output) throws IOException {
+            super.write(output);
+            stringGenerator.write(output);
+        }
+
+        @Override
+        public void read(final GeneratorInput input) throws IOException {
+            super.read(input);
+            stringGenerator.read(input);
+        }
     }
 }
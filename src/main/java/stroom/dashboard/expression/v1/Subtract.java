@@ -37,5 +37,13 @@ class Subtract extends NumericFunction {
         protected double op(final double cur, final double val) {
             return cur - val;
         }
+
+        @Override
+        void calc(final double[] current, final double[] values, final int size) {
+            // NaN propagates through the operation so there is no need to test for it.
+            for (int i = 0; i < size; i++) {
+                current[i] -= values[i];
+            }
+        }
     }
 }
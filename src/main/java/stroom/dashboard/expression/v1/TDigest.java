@@ -0,0 +1,324 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A merging t-digest (Dunning and Ertl) that estimates quantiles of a stream of values using a bounded number of
+ * weighted centroids. Values are buffered and periodically merged into the centroids, which are kept small near
+ * the tails so extreme quantiles such as the 99th percentile stay accurate. Digests can be merged so partial
+ * results can be combined.
+ * <p>
+ * Quantiles are interpolated between centroid centres, so for small numbers of values, where every centroid
+ * holds a single value, the result is the same as interpolating between the sorted values.
+ */
+class TDigest implements Serializable {
+    private static final long serialVersionUID = 6434963245470312045L;
+
+    static final double DEFAULT_COMPRESSION = 100;
+
+    private static final double[] EMPTY = new double[0];
+    private static final int SHALLOW_SIZE = 96;
+
+    private final double compression;
+    private final int maxBufferSize;
+
+    // Centroids sorted by mean.
+    private double[] means = EMPTY;
+    private double[] weights = EMPTY;
+    private int centroidCount;
+    private double totalWeight;
+
+    // Values and merged centroids waiting to be merged into the centroids.
+    private double[] bufferMeans = EMPTY;
+    private double[] bufferWeights = EMPTY;
+    private int bufferSize;
+    private double bufferWeight;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest(final double compression) {
+        this.compression = compression;
+        this.maxBufferSize = (int) (compression * 5);
+    }
+
+    void add(final double value) {
+        // NaN can't be ordered so can't contribute to a quantile.
+        if (!Double.isNaN(value)) {
+            add(value, 1);
+        }
+    }
+
+    void merge(final TDigest digest) {
+        for (int i = 0; i < digest.centroidCount; i++) {
+            add(digest.means[i], digest.weights[i]);
+        }
+        for (int i = 0; i < digest.bufferSize; i++) {
+            add(digest.bufferMeans[i], digest.bufferWeights[i]);
+        }
+
+        // Adding centroids only tracks their means so take the real extremes from the other digest.
+        min = Math.min(min, digest.min);
+        max = Math.max(max, digest.max);
+    }
+
+    boolean isEmpty() {
+        return totalWeight + bufferWeight == 0;
+    }
+
+    /**
+     * @param q The quantile to estimate between 0 and 1.
+     * @return The estimated value at the quantile or NaN if no values have been added.
+     */
+    double quantile(final double q) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+
+        final int last = centroidCount - 1;
+        final double index = q * totalWeight;
+
+        // Interpolate between the min and max and the centres of the outer centroids.
+        if (index <= weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+        if (index >= totalWeight - weights[last] / 2) {
+            return max - (max - means[last]) * (totalWeight - index) / (weights[last] / 2);
+        }
+
+        double centre = weights[0] / 2;
+        for (int i = 0; i < last; i++) {
+            final double gap = (weights[i] + weights[i + 1]) / 2;
+            if (index < centre + gap) {
+                return means[i] + (means[i + 1] - means[i]) * (index - centre) / gap;
+            }
+            centre += gap;
+        }
+        return means[last];
+    }
+
+    private void add(final double mean, final double weight) {
+        if (bufferSize == bufferMeans.length) {
+            final int size = Math.min(maxBufferSize, Math.max(16, bufferSize * 2));
+            bufferMeans = Arrays.copyOf(bufferMeans, size);
+            bufferWeights = Arrays.copyOf(bufferWeights, size);
+        }
+        bufferMeans[bufferSize] = mean;
+        bufferWeights[bufferSize] = weight;
+        bufferSize++;
+        bufferWeight += weight;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+
+        if (bufferSize == maxBufferSize) {
+            compress();
+        }
+    }
+
+    private void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+
+        sort(bufferMeans, bufferWeights, 0, bufferSize - 1);
+
+        final double total = totalWeight + bufferWeight;
+        final double[] newMeans = new double[centroidCount + bufferSize];
+        final double[] newWeights = new double[centroidCount + bufferSize];
+        int count = 0;
+
+        // Merge the sorted centroids and buffer, combining neighbours while the combined centroid stays within
+        // the size allowed for its position by the scale function.
+        int i = 0;
+        int j = 0;
+        double weightSoFar = 0;
+        final double z = 4 * Math.log(Math.max(1, total / compression)) + 24;
+        double qLimit = qLimit(0, z);
+        double mean = Double.NaN;
+        double weight = 0;
+        while (i < centroidCount || j < bufferSize) {
+            final double nextMean;
+            final double nextWeight;
+            if (j == bufferSize || (i < centroidCount && means[i] <= bufferMeans[j])) {
+                nextMean = means[i];
+                nextWeight = weights[i];
+                i++;
+            } else {
+                nextMean = bufferMeans[j];
+                nextWeight = bufferWeights[j];
+                j++;
+            }
+
+            if (weight == 0) {
+                mean = nextMean;
+                weight = nextWeight;
+            } else if ((weightSoFar + weight + nextWeight) / total <= qLimit) {
+                weight += nextWeight;
+                mean += (nextMean - mean) * nextWeight / weight;
+            } else {
+                newMeans[count] = mean;
+                newWeights[count] = weight;
+                count++;
+                weightSoFar += weight;
+                qLimit = qLimit(weightSoFar / total, z);
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        newMeans[count] = mean;
+        newWeights[count] = weight;
+        count++;
+
+        means = newMeans;
+        weights = newWeights;
+        centroidCount = count;
+        totalWeight = total;
+        bufferSize = 0;
+        bufferWeight = 0;
+    }
+
+    /**
+     * Get the largest quantile that a centroid starting at the supplied quantile may extend to. A centroid may span
+     * one unit of both the arcsine scale function k1(q) = compression / 2pi * asin(2q - 1), which limits centroid
+     * sizes around the median, and the logistic scale function k2(q) = compression / z * log(q / (1 - q)) with z
+     * normalised to the number of values, which keeps centroids near the tails down to a few values each.
+     */
+    private double qLimit(final double q, final double z) {
+        double limit = 1;
+
+        final double angle = Math.asin(2 * q - 1) + 2 * Math.PI / compression;
+        if (angle < Math.PI / 2) {
+            limit = (Math.sin(angle) + 1) / 2;
+        }
+
+        if (q > 0 && q < 1) {
+            final double odds = q / (1 - q) * Math.exp(z / compression);
+            limit = Math.min(limit, odds / (1 + odds));
+        } else if (q == 0) {
+            limit = 0;
+        }
+
+        return limit;
+    }
+
+    private static void sort(final double[] means, final double[] weights, final int from, final int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i <= to; i++) {
+                final double mean = means[i];
+                final double weight = weights[i];
+                int j = i - 1;
+                while (j >= from && means[j] > mean) {
+                    means[j + 1] = means[j];
+                    weights[j + 1] = weights[j];
+                    j--;
+                }
+                means[j + 1] = mean;
+                weights[j + 1] = weight;
+            }
+            return;
+        }
+
+        final double pivot = means[(from + to) >>> 1];
+        int i = from;
+        int j = to;
+        while (i <= j) {
+            while (means[i] < pivot) {
+                i++;
+            }
+            while (means[j] > pivot) {
+                j--;
+            }
+            if (i <= j) {
+                final double mean = means[i];
+                means[i] = means[j];
+                means[j] = mean;
+                final double weight = weights[i];
+                weights[i] = weights[j];
+                weights[j] = weight;
+                i++;
+                j--;
+            }
+        }
+        sort(means, weights, from, j);
+        sort(means, weights, i, to);
+    }
+
+    void write(final GeneratorOutput output) throws IOException {
+        // Only write the merged centroids.
+        compress();
+        output.writeSize(centroidCount);
+        for (int i = 0; i < centroidCount; i++) {
+            output.writeDouble(means[i]);
+            output.writeDouble(weights[i]);
+        }
+        if (centroidCount > 0) {
+            output.writeDouble(min);
+            output.writeDouble(max);
+        }
+    }
+
+    void read(final GeneratorInput input) throws IOException {
+        centroidCount = input.readSize();
+        means = new double[centroidCount];
+        weights = new double[centroidCount];
+        totalWeight = 0;
+        for (int i = 0; i < centroidCount; i++) {
+            means[i] = input.readDouble();
+            weights[i] = input.readDouble();
+            totalWeight += weights[i];
+        }
+        bufferSize = 0;
+        bufferWeight = 0;
+        if (centroidCount > 0) {
+            min = input.readDouble();
+            max = input.readDouble();
+        } else {
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * @return The approximate number of bytes held by the digest, which is bounded by the compression.
+     */
+    long estimatedSizeInBytes() {
+        return SHALLOW_SIZE +
+                SizeEstimates.array(means.length, 8) +
+                SizeEstimates.array(weights.length, 8) +
+                SizeEstimates.array(bufferMeans.length, 8) +
+                SizeEstimates.array(bufferWeights.length, 8);
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        // Only serialise the merged centroids.
+        compress();
+        if (means.length > centroidCount) {
+            means = Arrays.copyOf(means, centroidCount);
+            weights = Arrays.copyOf(weights, centroidCount);
+        }
+        bufferMeans = EMPTY;
+        bufferWeights = EMPTY;
+        out.defaultWriteObject();
+    }
+}
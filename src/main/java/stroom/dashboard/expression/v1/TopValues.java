@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+/**
+ * Joins the smallest values of a group in ascending order, i.e. the values that top() would select if the
+ * group were sorted by the value.
+ */
+class TopValues extends AbstractValuesFunction {
+    static final String NAME = "topValues";
+
+    public TopValues(final String name) {
+        super(name, false);
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * The components of a URI as returned by java.net.URI, shared by the extract...FromUri() functions. Most URIs are
+ * split by hand without creating a java.net.URI or throwing an exception. URIs that need decoding or use less common
+ * forms, e.g. IPv6 hosts, are still parsed by java.net.URI so the results are always the same as its getters.
+ * <p>
+ * The last URI parsed on each thread is remembered so that several functions extracting parts of the same value for
+ * a row only parse it once.
+ */
+final class UriParts {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UriParts.class);
+
+    static final UriParts INVALID = new UriParts();
+
+    private static final ThreadLocal<UriParts> LAST = new ThreadLocal<>();
+
+    // Characters that can appear anywhere in a URI that can be split by hand.
+    private static final boolean[] SIMPLE = new boolean[128];
+    // Characters that java.net.URI never allows outside of an IPv6 address.
+    private static final boolean[] ILLEGAL = new boolean[128];
+    // Characters allowed in the user info of a URI that can be split by hand.
+    private static final boolean[] USER_INFO = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            SIMPLE[c] = true;
+            SIMPLE[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            SIMPLE[c] = true;
+        }
+        for (final char c : "-._~!*'():/?#@$&+,;=".toCharArray()) {
+            SIMPLE[c] = true;
+        }
+
+        for (char c = 0; c <= ' '; c++) {
+            ILLEGAL[c] = true;
+        }
+        for (final char c : "\"<>\\^`{|}\u007f".toCharArray()) {
+            ILLEGAL[c] = true;
+        }
+
+        for (char c = 0; c < 128; c++) {
+            USER_INFO[c] = Character.isLetterOrDigit(c) || "-._~!*'();:&=+$,".indexOf(c) >= 0;
+        }
+    }
+
+    private final String value;
+    private final boolean valid;
+    private final String scheme;
+    private final String schemeSpecificPart;
+    private final String authority;
+    private final String userInfo;
+    private final String host;
+    private final int port;
+    private final String path;
+    private final String query;
+    private final String fragment;
+
+    private UriParts() {
+        this(null, false, null, null, null, null, null, -1, null, null, null);
+    }
+
+    private UriParts(final String value,
+                     final boolean valid,
+                     final String scheme,
+                     final String schemeSpecificPart,
+                     final String authority,
+                     final String userInfo,
+                     final String host,
+                     final int port,
+                     final String path,
+                     final String query,
+                     final String fragment) {
+        this.value = value;
+        this.valid = valid;
+        this.scheme = scheme;
+        this.schemeSpecificPart = schemeSpecificPart;
+        this.authority = authority;
+        this.userInfo = userInfo;
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.query = query;
+        this.fragment = fragment;
+    }
+
+    /**
+     * @param value The URI to parse.
+     * @return The parts of the URI or {@link #INVALID} if it is not a valid URI.
+     */
+    static UriParts parse(final String value) {
+        if (value == null) {
+            return INVALID;
+        }
+
+        final UriParts last = LAST.get();
+        if (last != null && value.equals(last.value)) {
+            return last;
+        }
+
+        UriParts parts = split(value);
+        if (parts == null) {
+            parts = parseWithUri(value);
+        }
+        LAST.set(parts);
+        return parts;
+    }
+
+    /**
+     * Split a URI by hand.
+     *
+     * @return The parts, {@link #INVALID} if it is definitely not a valid URI or null if it needs to be parsed by
+     * java.net.URI.
+     */
+    private static UriParts split(final String value) {
+        final int length = value.length();
+        int firstColon = -1;
+        int firstDelimiter = length;
+        int firstHash = -1;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 128 || !SIMPLE[c]) {
+                return c < 128 && ILLEGAL[c]
+                        ? invalid(value)
+                        : null;
+            }
+            if (c == ':' && firstColon == -1 && i < firstDelimiter) {
+                firstColon = i;
+            } else if ((c == '/' || c == '?' || c == '#') && firstDelimiter == length) {
+                firstDelimiter = i;
+            }
+            if (c == '#') {
+                if (firstHash != -1) {
+                    // A second hash is not allowed in the fragment.
+                    return invalid(value);
+                }
+                firstHash = i;
+            }
+        }
+
+        final int end = firstHash == -1
+                ? length
+                : firstHash;
+        final String fragment = firstHash == -1
+                ? null
+                : value.substring(firstHash + 1);
+
+        // Scheme.
+        String scheme = null;
+        int pos = 0;
+        if (firstColon != -1) {
+            if (firstColon == 0 || !Character.isLetter(value.charAt(0))) {
+                return invalid(value);
+            }
+            for (int i = 1; i < firstColon; i++) {
+                final char c = value.charAt(i);
+                if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+                    return invalid(value);
+                }
+            }
+            scheme = value.substring(0, firstColon);
+            pos = firstColon + 1;
+            if (pos == end) {
+                // Expected a scheme specific part.
+                return invalid(value);
+            }
+            if (value.charAt(pos) != '/') {
+                // An opaque URI, e.g. mailto:user@example.com, only has a scheme specific part.
+                return new UriParts(value, true, scheme, value.substring(pos, end), null, null, null, -1, null, null,
+                        fragment);
+            }
+        }
+        final String schemeSpecificPart = value.substring(pos, end);
+
+        // Authority.
+        String authority = null;
+        String userInfo = null;
+        String host = null;
+        int port = -1;
+        if (value.startsWith("//", pos)) {
+            pos += 2;
+            int authorityEnd = pos;
+            while (authorityEnd < end && value.charAt(authorityEnd) != '/' && value.charAt(authorityEnd) != '?') {
+                authorityEnd++;
+            }
+
+            if (authorityEnd == pos) {
+                if (authorityEnd == length) {
+                    // Expected an authority.
+                    return invalid(value);
+                }
+            } else {
+                authority = value.substring(pos, authorityEnd);
+
+                int hostStart = pos;
+                final int at = value.indexOf('@', pos);
+                if (at != -1 && at < authorityEnd) {
+                    for (int i = pos; i < at; i++) {
+                        if (!USER_INFO[value.charAt(i)]) {
+                            return null;
+                        }
+                    }
+                    userInfo = value.substring(pos, at);
+                    hostStart = at + 1;
+                }
+
+                int hostEnd = hostStart;
+                while (hostEnd < authorityEnd && value.charAt(hostEnd) != ':') {
+                    hostEnd++;
+                }
+                if (!isSimpleHost(value, hostStart, hostEnd)) {
+                    return null;
+                }
+                host = value.substring(hostStart, hostEnd);
+
+                if (hostEnd < authorityEnd) {
+                    final int portStart = hostEnd + 1;
+                    if (authorityEnd - portStart > 9) {
+                        return null;
+                    }
+                    for (int i = portStart; i < authorityEnd; i++) {
+                        final char c = value.charAt(i);
+                        if (c < '0' || c > '9') {
+                            return null;
+                        }
+                        port = port == -1
+                                ? c - '0'
+                                : (port * 10) + (c - '0');
+                    }
+                }
+            }
+            pos = authorityEnd;
+        }
+
+        // Path and query.
+        int queryStart = value.indexOf('?', pos);
+        if (queryStart >= end) {
+            queryStart = -1;
+        }
+        final String path = queryStart == -1
+                ? value.substring(pos, end)
+                : value.substring(pos, queryStart);
+        final String query = queryStart == -1
+                ? null
+                : value.substring(queryStart + 1, end);
+
+        return new UriParts(value, true, scheme, schemeSpecificPart, authority, userInfo, host, port, path, query,
+                fragment);
+    }
+
+    /**
+     * @return True if the host is a name made of labels of letters, digits and hyphens where the last of several
+     * labels starts with a letter, i.e. a host that java.net.URI accepts and doesn't treat as an IPv4 address.
+     */
+    private static boolean isSimpleHost(final String value, final int start, final int end) {
+        if (start == end) {
+            return false;
+        }
+
+        int labelStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || value.charAt(i) == '.') {
+                if (i == labelStart || value.charAt(labelStart) == '-' || value.charAt(i - 1) == '-') {
+                    return false;
+                }
+                if (i == end && labelStart > start && !Character.isLetter(value.charAt(labelStart))) {
+                    return false;
+                }
+                labelStart = i + 1;
+            } else if (!Character.isLetterOrDigit(value.charAt(i)) && value.charAt(i) != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static UriParts invalid(final String value) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Invalid URI: " + value);
+        }
+        return INVALID;
+    }
+
+    private static UriParts parseWithUri(final String value) {
+        try {
+            final URI uri = new URI(value);
+            return new UriParts(value,
+                    true,
+                    uri.getScheme(),
+                    uri.getSchemeSpecificPart(),
+                    uri.getAuthority(),
+                    uri.getUserInfo(),
+                    uri.getHost(),
+                    uri.getPort(),
+                    uri.getPath(),
+                    uri.getQuery(),
+                    uri.getFragment());
+        } catch (final URISyntaxException | RuntimeException e) {
+            LOGGER.debug(e.getMessage(), e);
+            return INVALID;
+        }
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    String getScheme() {
+        return scheme;
+    }
+
+    String getSchemeSpecificPart() {
+        return schemeSpecificPart;
+    }
+
+    String getAuthority() {
+        return authority;
+    }
+
+    String getUserInfo() {
+        return userInfo;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getQuery() {
+        return query;
+    }
+
+    String getFragment() {
+        return fragment;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.util.ArrayDeque;
+
+/**
+ * A block of rows held as columns so that a generator can be set or evaluated for many rows with a single call,
+ * see {@link Generator#setBatch(ValBlock)}. A selection vector picks which rows of the block are processed, e.g.
+ * the rows that belong to one group. The block also holds the scratch arrays that generators borrow while
+ * evaluating it so that evaluating many groups against the same block does not allocate.
+ */
+public final class ValBlock {
+    private final Val[][] columns;
+    private final int[] selection;
+    private final int size;
+    private final Scratch scratch;
+    private Val[] row;
+
+    /**
+     * @param columns  The values of each field where columns[fieldIndex][row] is the value of a field for a row.
+     * @param rowCount The number of rows in the block, all of which are selected.
+     */
+    public ValBlock(final Val[][] columns, final int rowCount) {
+        this(columns, null, rowCount, new Scratch());
+    }
+
+    /**
+     * @param columns   The values of each field where columns[fieldIndex][row] is the value of a field for a row.
+     * @param selection The indexes of the rows to process in the order they are to be processed.
+     * @param size      The number of entries of the selection vector to use.
+     */
+    public ValBlock(final Val[][] columns, final int[] selection, final int size) {
+        this(columns, selection, size, new Scratch());
+    }
+
+    private ValBlock(final Val[][] columns, final int[] selection, final int size, final Scratch scratch) {
+        this.columns = columns;
+        this.selection = selection;
+        this.size = size;
+        this.scratch = scratch;
+    }
+
+    /**
+     * Select different rows of the same columns. The returned block shares scratch arrays with this one so it
+     * must not be evaluated concurrently with it.
+     *
+     * @param selection The indexes of the rows to process in the order they are to be processed.
+     * @param size      The number of entries of the selection vector to use.
+     * @return A block of the selected rows.
+     */
+    public ValBlock select(final int[] selection, final int size) {
+        return new ValBlock(columns, selection, size, scratch);
+    }
+
+    /**
+     * @return The number of selected rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of a field for the selected row at the supplied position, treating a missing value as null
+     * in the same way as a value reference does.
+     */
+    Val get(final int fieldIndex, final int position) {
+        final Val val = columns[fieldIndex][index(position)];
+        if (val == null) {
+            return ValNull.INSTANCE;
+        }
+        return val;
+    }
+
+    /**
+     * Get the selected row at the supplied position as an array of values that can be passed to
+     * {@link Generator#set(Val[])}. The array is reused for each call.
+     */
+    Val[] row(final int position) {
+        if (row == null) {
+            row = new Val[columns.length];
+        }
+        final int index = index(position);
+        for (int i = 0; i < columns.length; i++) {
+            row[i] = columns[i][index];
+        }
+        return row;
+    }
+
+    double[] borrowDoubles() {
+        final double[] doubles = scratch.doubles.poll();
+        if (doubles == null || doubles.length < size) {
+            return new double[size];
+        }
+        return doubles;
+    }
+
+    Val[] borrowVals() {
+        final Val[] vals = scratch.vals.poll();
+        if (vals == null || vals.length < size) {
+            return new Val[size];
+        }
+        return vals;
+    }
+
+    void release(final double[] doubles, final Val[] vals) {
+        scratch.doubles.push(doubles);
+        scratch.vals.push(vals);
+    }
+
+    /**
+     * Get the value of a row from the results of {@link Generator#evalBatch(ValBlock, double[], Val[])}.
+     */
+    static Val val(final double[] doubles, final Val[] vals, final int position) {
+        final Val val = vals[position];
+        if (val == null) {
+            return ValDouble.create(doubles[position]);
+        }
+        return val;
+    }
+
+    private int index(final int position) {
+        if (selection == null) {
+            return position;
+        }
+        return selection[position];
+    }
+
+    private static class Scratch {
+        private final ArrayDeque<double[]> doubles = new ArrayDeque<>();
+        private final ArrayDeque<Val[]> vals = new ArrayDeque<>();
+    }
+}
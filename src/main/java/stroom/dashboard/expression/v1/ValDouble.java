@@ -51,6 +51,16 @@ public class ValDouble implements ValNumber {
         return value;
     }
 
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public long longValue() {
+        return (long) value;
+    }
+
     @Override
     public Boolean toBoolean() {
         return value != 0;
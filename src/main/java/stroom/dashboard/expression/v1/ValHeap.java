@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.expression.v1;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Keeps the smallest, or largest, values added to it up to a fixed limit using a binary heap ordered with
+ * ValComparator. This means that the first few values in sort order can be selected with memory proportional to
+ * the limit rather than to the number of values. The root of the heap is the kept value that would be dropped
+ * first.
+ */
+class ValHeap implements Serializable {
+    private static final long serialVersionUID = -1390845473961384720L;
+
+    private static final ValComparator COMPARATOR = new ValComparator();
+    private static final int SHALLOW_SIZE = 40;
+
+    private final int limit;
+    private final boolean largest;
+    private Val[] heap;
+    private int size;
+    private long valsSize;
+
+    ValHeap(final int limit, final boolean largest) {
+        this.limit = limit;
+        this.largest = largest;
+    }
+
+    void add(final Val val) {
+        if (size < limit) {
+            if (heap == null) {
+                heap = new Val[Math.min(limit, 16)];
+            } else if (size == heap.length) {
+                heap = Arrays.copyOf(heap, (int) Math.min(limit, size * 2L));
+            }
+            heap[size] = val;
+            siftUp(size);
+            size++;
+            valsSize += SizeEstimates.val(val);
+        } else if (compare(val, heap[0]) < 0) {
+            valsSize += SizeEstimates.val(val) - SizeEstimates.val(heap[0]);
+            heap[0] = val;
+            siftDown(0);
+        }
+    }
+
+    void merge(final ValHeap valHeap) {
+        for (int i = 0; i < valHeap.size; i++) {
+            add(valHeap.heap[i]);
+        }
+    }
+
+    boolean isFull() {
+        return size == limit;
+    }
+
+    /**
+     * @return The kept value that is furthest from the start, e.g. the nth smallest value once n values are kept.
+     */
+    Val peek() {
+        if (size == 0) {
+            return null;
+        }
+        return heap[0];
+    }
+
+    /**
+     * @return The kept values in ascending order.
+     */
+    Val[] toSortedArray() {
+        if (size == 0) {
+            return new Val[0];
+        }
+        final Val[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, COMPARATOR);
+        return sorted;
+    }
+
+    void write(final GeneratorOutput output) throws IOException {
+        output.writeSize(size);
+        for (int i = 0; i < size; i++) {
+            output.writeVal(heap[i]);
+        }
+    }
+
+    void read(final GeneratorInput input) throws IOException {
+        heap = null;
+        size = 0;
+        valsSize = 0;
+        final int count = input.readSize();
+        for (int i = 0; i < count; i++) {
+            add(input.readVal());
+        }
+    }
+
+    /**
+     * @return The approximate number of bytes held by the heap and the values it keeps.
+     */
+    long estimatedSizeInBytes() {
+        long estimate = SHALLOW_SIZE + valsSize;
+        if (heap != null) {
+            estimate += SizeEstimates.array(heap.length, SizeEstimates.REFERENCE);
+        }
+        return estimate;
+    }
+
+    private int compare(final Val o1, final Val o2) {
+        final int result = COMPARATOR.compare(o1, o2);
+        return largest ? -result : result;
+    }
+
+    private void siftUp(int index) {
+        final Val val = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (compare(val, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = val;
+    }
+
+    private void siftDown(int index) {
+        final Val val = heap[index];
+        final int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            final int right = child + 1;
+            if (right < size && compare(heap[right], heap[child]) > 0) {
+                child = right;
+            }
+            if (compare(val, heap[child]) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = val;
+    }
+}
@@ -53,6 +53,16 @@ public class ValInteger implements ValNumber {
         return (double) value;
     }
 
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public long longValue() {
+        return value;
+    }
+
     @Override
     public Boolean toBoolean() {
         return value != 0;
@@ -52,6 +52,16 @@ public class ValLong implements ValNumber {
         return (double) value;
     }
 
+    @Override
+    public double doubleValue() {
+        return (double) value;
+    }
+
+    @Override
+    public long longValue() {
+        return value;
+    }
+
     @Override
     public Boolean toBoolean() {
         return value != 0;
@@ -1,4 +1,13 @@
 package stroom.dashboard.expression.v1;
 
 interface ValNumber extends Val {
+    /**
+     * @return The value of this number as a primitive double without boxing.
+     */
+    double doubleValue();
+
+    /**
+     * @return The value of this number as a primitive long without boxing.
+     */
+    long longValue();
 }
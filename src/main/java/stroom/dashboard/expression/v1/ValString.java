@@ -53,16 +53,27 @@ public class ValString implements Val {
     @Override
     public Long toLong() {
         if (optionalLong == null) {
-            try {
-                optionalLong = Optional.of(DateUtil.parseNormalDateTimeString(value));
-            } catch (final RuntimeException e) {
-                try {
-                    optionalLong = Optional.of(Long.valueOf(value));
-                } catch (final RuntimeException e2) {
-                    optionalLong = Optional.empty();
+            final long millis = DateUtil.tryParseNormalDateTimeString(value);
+            if (millis != DateUtil.NOT_A_DATE) {
+                optionalLong = Optional.of(millis);
+            } else {
+                // Only use the JDK parser, which throws for anything that isn't a number, if we can't tell from the
+                // characters alone.
+                switch (StringUtil.classifyNumber(value)) {
+                    case StringUtil.INTEGER:
+                        optionalLong = Optional.ofNullable(StringUtil.parseInteger(value));
+                        break;
+                    case StringUtil.UNKNOWN:
+                        try {
+                            optionalLong = Optional.of(Long.valueOf(value));
+                        } catch (final RuntimeException e) {
+                            optionalLong = Optional.empty();
+                        }
+                        break;
+                    default:
+                        optionalLong = Optional.empty();
                 }
             }
-
         }
         return optionalLong.orElse(null);
     }
@@ -70,19 +81,39 @@ public class ValString implements Val {
     @Override
     public Double toDouble() {
         if (optionalDouble == null) {
-            try {
-                optionalDouble = Optional.of((double) DateUtil.parseNormalDateTimeString(value));
-            } catch (final RuntimeException e) {
-                try {
-                    optionalDouble = Optional.of(new BigDecimal(value).doubleValue());
-                } catch (final RuntimeException e2) {
+            final long millis = DateUtil.tryParseNormalDateTimeString(value);
+            if (millis != DateUtil.NOT_A_DATE) {
+                optionalDouble = Optional.of((double) millis);
+            } else {
+                final int numberType = StringUtil.classifyNumber(value);
+                if (numberType == StringUtil.INTEGER && StringUtil.isExactDouble(value)) {
+                    optionalDouble = Optional.of(StringUtil.parseInteger(value).doubleValue());
+                } else if (numberType == StringUtil.NOT_NUMBER) {
                     optionalDouble = Optional.empty();
+                } else {
+                    optionalDouble = Optional.ofNullable(parseDecimal(value, numberType));
                 }
             }
         }
         return optionalDouble.orElse(null);
     }
 
+    private static Double parseDecimal(final String value, final int numberType) {
+        try {
+            // Both parsers round correctly so give the same result for the strings they both accept, other than
+            // BigDecimal producing 0 rather than -0 and rejecting exponents that don't fit in an int.
+            if (numberType == StringUtil.DECIMAL) {
+                final double d = Double.parseDouble(value);
+                if (d != 0 && !Double.isInfinite(d)) {
+                    return d;
+                }
+            }
+            return new BigDecimal(value).doubleValue();
+        } catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
     @Override
     public Boolean toBoolean() {
         try {
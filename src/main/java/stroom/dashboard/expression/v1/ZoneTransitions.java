@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * The offset changes of a time zone between 1900 and 2200 so that instants can be converted to and from local time
+ * with a binary search rather than by creating ZonedDateTime objects. Instants outside of these years, or local times
+ * close to an offset change where the local time may be skipped or repeated, are left to java.time.
+ */
+final class ZoneTransitions {
+    private static final BoundedCache<ZoneId, ZoneTransitions> CACHE = new BoundedCache<>("zone transitions", 1000);
+
+    private static final long START = LocalDateTime.of(1900, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final long END = LocalDateTime.of(2200, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    // No zone has an offset change of more than a day so local times further than this from one are unambiguous.
+    private static final long MARGIN = 86_400_000L;
+    // Instants are grouped into buckets of about 50 days so that the search for an offset only needs to step over
+    // the few changes in a bucket.
+    private static final int BUCKET_SHIFT = 32;
+
+    private final ZoneId zoneId;
+    // The instants at which the offset changes.
+    private final long[] instants;
+    // The offset before the first change followed by the offset after each change.
+    private final long[] offsets;
+    // The index of the offset in force at the start of each bucket.
+    private final int[] buckets;
+
+    private ZoneTransitions(final ZoneId zoneId) {
+        this.zoneId = zoneId;
+
+        final ZoneRules rules = zoneId.getRules();
+        final LongList instantList = new LongList();
+        final LongList offsetList = new LongList();
+        offsetList.add(rules.getOffset(Instant.ofEpochMilli(START)).getTotalSeconds() * 1000L);
+
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(START));
+        while (transition != null && transition.getInstant().toEpochMilli() < END) {
+            instantList.add(transition.getInstant().toEpochMilli());
+            offsetList.add(transition.getOffsetAfter().getTotalSeconds() * 1000L);
+            transition = rules.nextTransition(transition.getInstant());
+        }
+
+        instants = instantList.toArray();
+        offsets = offsetList.toArray();
+
+        buckets = new int[(int) ((END - START) >>> BUCKET_SHIFT) + 1];
+        int index = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            final long bucketStart = START + ((long) i << BUCKET_SHIFT);
+            while (index < instants.length && instants[index] <= bucketStart) {
+                index++;
+            }
+            buckets[i] = index;
+        }
+    }
+
+    static ZoneTransitions get(final ZoneId zoneId) {
+        return CACHE.computeIfAbsent(zoneId, ZoneTransitions::new);
+    }
+
+    /**
+     * @return The local time in the zone as milliseconds since the epoch in UTC.
+     */
+    long toLocal(final long instant) {
+        if (instant < START || instant >= END) {
+            final LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(instant), zoneId);
+            return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        return instant + offsets[index(instant)];
+    }
+
+    /**
+     * Convert a local time back to an instant in the same way as LocalDateTime.atZone(), i.e. a local time skipped by
+     * an offset change is moved forward by the length of the gap and a repeated local time uses the earlier offset.
+     *
+     * @param local The local time in the zone as milliseconds since the epoch in UTC.
+     * @return The instant.
+     */
+    long toInstant(final long local) {
+        if (local >= START + MARGIN && local < END - MARGIN) {
+            final int index = index(local);
+            final long instant = local - offsets[index];
+            // The instant is unambiguous if no offset change is close to it.
+            if ((index == 0 || instant - instants[index - 1] > MARGIN) &&
+                    (index == instants.length || instants[index] - instant > MARGIN)) {
+                return instant;
+            }
+        }
+
+        final LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(local), ZoneOffset.UTC);
+        return dateTime.atZone(zoneId).toInstant().toEpochMilli();
+    }
+
+    /**
+     * @return The index of the offset in force at an instant between START and END.
+     */
+    private int index(final long instant) {
+        int index = buckets[(int) ((instant - START) >>> BUCKET_SHIFT)];
+        // An instant at a change uses the offset after it.
+        while (index < instants.length && instants[index] <= instant) {
+            index++;
+        }
+        return index;
+    }
+
+    private static class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(final long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
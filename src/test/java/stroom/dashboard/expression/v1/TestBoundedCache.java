@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestBoundedCache {
+    @Test
+    void testStats() {
+        final BoundedCache<String, String> cache = new BoundedCache<>("test", 10);
+        assertThat(cache.computeIfAbsent("a", String::toUpperCase)).isEqualTo("A");
+        assertThat(cache.computeIfAbsent("a", k -> "unused")).isEqualTo("A");
+        assertThat(cache.get("b")).isNull();
+
+        final CacheStats stats = cache.getStats();
+        assertThat(stats.getSize()).isEqualTo(1);
+        assertThat(stats.getMaxEntries()).isEqualTo(10);
+        assertThat(stats.getHitCount()).isEqualTo(1);
+        assertThat(stats.getMissCount()).isEqualTo(2);
+        assertThat(stats.getEvictionCount()).isEqualTo(0);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvicted() throws InterruptedException {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>("test", 10);
+        for (int i = 0; i < 10; i++) {
+            cache.computeIfAbsent(i, k -> k);
+        }
+
+        // Use the first half again so that the second half is evicted first.
+        Thread.sleep(5);
+        for (int i = 0; i < 5; i++) {
+            cache.computeIfAbsent(i, k -> k);
+        }
+
+        cache.computeIfAbsent(10, k -> k);
+        assertThat(cache.size()).isEqualTo(9);
+        assertThat(cache.getStats().getEvictionCount()).isEqualTo(2);
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get(i)).isEqualTo(i);
+        }
+        assertThat(cache.get(5)).isNull();
+        assertThat(cache.get(6)).isNull();
+        assertThat(cache.get(10)).isEqualTo(10);
+    }
+
+    @Test
+    void testConcurrentUse() throws Exception {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>("test", 50);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int offset = thread;
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        final int key = (i * 31 + offset) % 200;
+                        assertThat(cache.computeIfAbsent(key, k -> k * 2)).isEqualTo(key * 2);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        final CacheStats stats = cache.getStats();
+        assertThat(stats.getHitCount() + stats.getMissCount()).isEqualTo(80000);
+        assertThat(stats.getSize()).isLessThanOrEqualTo(50 + 8);
+        assertThat(stats.getEvictionCount()).isEqualTo(stats.getMissCount() - stats.getSize());
+    }
+}
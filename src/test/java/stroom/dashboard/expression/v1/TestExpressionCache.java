@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestExpressionCache {
+    private final ExpressionCache cache = new ExpressionCache(new ExpressionParser(new FunctionFactory(), new ParamFactory()), 2);
+
+    @Test
+    void testHit() throws ParseException {
+        final CompiledExpression first = cache.get(FieldIndexMap.forFields("val1"), "sum(${val1})", null);
+        final CompiledExpression second = cache.get(FieldIndexMap.forFields("val1"), "sum(${val1})", null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+
+        final Generator gen = second.createGenerator();
+        gen.set(new Val[]{ValDouble.create(2)});
+        gen.set(new Val[]{ValDouble.create(3)});
+        assertThat(gen.eval()).isEqualTo(ValDouble.create(5));
+    }
+
+    @Test
+    void testDifferentLayout() throws ParseException {
+        final CompiledExpression first = cache.get(FieldIndexMap.forFields("val1", "val2"), "${val2}", null);
+        final CompiledExpression second = cache.get(FieldIndexMap.forFields("val2"), "${val2}", null);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+
+        final Generator gen = second.createGenerator();
+        gen.set(new Val[]{ValString.create("a")});
+        assertThat(gen.eval()).isEqualTo(ValString.create("a"));
+    }
+
+    @Test
+    void testCreatedFieldsReplayed() throws ParseException {
+        final FieldIndexMap fieldIndexMap1 = new FieldIndexMap(true);
+        cache.get(fieldIndexMap1, "concat(${b}, ${a})", null);
+
+        final FieldIndexMap fieldIndexMap2 = new FieldIndexMap(true);
+        cache.get(fieldIndexMap2, "concat(${b}, ${a})", null);
+
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(fieldIndexMap2.getMap()).isEqualTo(fieldIndexMap1.getMap());
+    }
+
+    @Test
+    void testStaticMappedValues() throws ParseException {
+        final CompiledExpression first = cache.get(new FieldIndexMap(), "param('key')", Collections.singletonMap("key", "a"));
+        final CompiledExpression second = cache.get(new FieldIndexMap(), "param('key')", Collections.singletonMap("key", "b"));
+
+        assertThat(first.createGenerator().eval()).isEqualTo(ValString.create("a"));
+        assertThat(second.createGenerator().eval()).isEqualTo(ValString.create("b"));
+    }
+
+    @Test
+    void testEviction() throws ParseException {
+        cache.get(new FieldIndexMap(), "1", null);
+        cache.get(new FieldIndexMap(), "2", null);
+        cache.get(new FieldIndexMap(), "3", null);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testParseError() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> cache.get(new FieldIndexMap(), "unknown(1)", null))
+                    .isInstanceOf(ParseException.class);
+        }
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+}
@@ -18,14 +18,14 @@ package stroom.dashboard.expression.v1;
 
 import org.junit.jupiter.api.Test;
 
-import java.text.ParseException;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 class TestExpressionTokeniser {
     @Test
-    void testBasic() throws ParseException {
+    void testBasic() {
         // Test string tokenisation.
         test("");
 
@@ -85,13 +85,35 @@ class TestExpressionTokeniser {
         // Test fields with non letters.
         test("sum(${user-id})");
         test("sum(${user id})");
+
+        // Test trailing comparison operators.
+        test("1>");
+        test("1<");
+        test("1>=");
+    }
+
+    @Test
+    void testIterator() {
+        final String expression = "if(${val}>=10, concat('it''s ', ${val}), -1.5)";
+        final ExpressionTokeniser expressionTokeniser = new ExpressionTokeniser();
+        final List<ExpressionTokeniser.Token> expected = expressionTokeniser.tokenise(expression);
+
+        final Iterator<ExpressionTokeniser.Token> iterator = expressionTokeniser.iterator(expression);
+        for (final ExpressionTokeniser.Token token : expected) {
+            assertThat(iterator.hasNext()).isTrue();
+            final ExpressionTokeniser.Token actual = iterator.next();
+            assertThat(actual.getType()).isEqualTo(token.getType());
+            assertThat(actual.getStart()).isEqualTo(token.getStart());
+            assertThat(actual.toString()).isEqualTo(token.toString());
+        }
+        assertThat(iterator.hasNext()).isFalse();
     }
 
-    private void test(final String expression) throws ParseException {
+    private void test(final String expression) {
         test(expression, false);
     }
 
-    private void test(final String expression, final boolean expectValidationFailure) throws ParseException {
+    private void test(final String expression, final boolean expectUnidentified) {
         final ExpressionTokeniser expressionTokeniser = new ExpressionTokeniser();
         final List<ExpressionTokeniser.Token> tokens = expressionTokeniser.tokenise(expression);
 
@@ -103,16 +125,10 @@ class TestExpressionTokeniser {
         // Make sure all the tokens have captured the expression fully.
         assertThat(sb.toString()).isEqualTo(expression);
 
-        try {
-            // Do some basic validation of the tokens.
-            final ExpressionValidator expressionValidator = new ExpressionValidator();
-            expressionValidator.validate(tokens);
-
-            assertThat(expectValidationFailure).withFailMessage("Expected failure").isFalse();
-        } catch (final ParseException e) {
-            if (!expectValidationFailure) {
-                throw e;
-            }
-        }
+        // Content that isn't part of any token is left unidentified for the parser to report.
+        assertThat(tokens)
+                .extracting(ExpressionTokeniser.Token::getType)
+                .as(expression)
+                .matches(types -> types.contains(ExpressionTokeniser.Token.Type.UNIDENTIFIED) == expectUnidentified);
     }
 }
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TestGroupingTable {
+    private final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+
+    @Test
+    void testGroupBy() throws ParseException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final GroupingTable table = new GroupingTable(
+                new ExpressionSet(parser, fieldIndexMap, "extractHostFromUri(${url})", "${user}"),
+                new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${bytes})", "extractHostFromUri(${url})"));
+
+        add(table, fieldIndexMap, "http://a.example.com/1", "jbloggs", 10);
+        add(table, fieldIndexMap, "http://b.example.com/2", "jbloggs", 20);
+        add(table, fieldIndexMap, "http://a.example.com/3", "jbloggs", 30);
+        add(table, fieldIndexMap, "http://a.example.com/4", null, 40);
+        add(table, fieldIndexMap, "http://a.example.com/5", null, 50);
+
+        assertThat(table.size()).isEqualTo(3);
+        assertGroup(table, 0, "a.example.com", "jbloggs", 2, 40);
+        assertGroup(table, 1, "b.example.com", "jbloggs", 1, 20);
+        assertGroup(table, 2, "a.example.com", null, 2, 90);
+    }
+
+    @Test
+    void testManyGroups() throws ParseException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final GroupingTable table = new GroupingTable(
+                new ExpressionSet(parser, fieldIndexMap, "${key} % 100000"),
+                new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${key})"));
+
+        final Map<Long, long[]> expected = new HashMap<>();
+        final Random random = new Random(1);
+        for (int i = 0; i < 500_000; i++) {
+            final long key = random.nextInt(1_000_000);
+            table.add(new Val[]{ValLong.create(key)});
+            final long[] counts = expected.computeIfAbsent(key % 100000, k -> new long[2]);
+            counts[0]++;
+            counts[1] += key;
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        for (int i = 0; i < table.size(); i++) {
+            final long[] counts = expected.get(table.getKey(i).get(0).toLong());
+            assertThat(table.getGenerators(i).get(0).eval().toLong()).isEqualTo(counts[0]);
+            assertThat(table.getGenerators(i).get(1).eval().toLong()).isEqualTo(counts[1]);
+        }
+    }
+
+    @Test
+    void testMerge() throws ParseException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${user}");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${bytes})");
+        final GroupingTable table1 = new GroupingTable(keyExpressions, valueExpressions);
+        final GroupingTable table2 = new GroupingTable(keyExpressions, valueExpressions);
+
+        add(table1, fieldIndexMap, null, "a", 1);
+        add(table1, fieldIndexMap, null, "b", 2);
+        add(table2, fieldIndexMap, null, "b", 3);
+        add(table2, fieldIndexMap, null, "c", 4);
+        table1.merge(table2);
+
+        assertThat(table1.size()).isEqualTo(3);
+        assertThat(table1.getKey(1).get(0).toString()).isEqualTo("b");
+        assertThat(table1.getGenerators(1).get(0).eval().toLong()).isEqualTo(2);
+        assertThat(table1.getGenerators(1).get(1).eval().toLong()).isEqualTo(5);
+        assertThat(table1.getKey(2).get(0).toString()).isEqualTo("c");
+        assertThat(table1.getGenerators(2).get(1).eval().toLong()).isEqualTo(4);
+    }
+
+    @Test
+    void testParallelAggregator() throws ParseException, InterruptedException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${key} % 1000");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${key})",
+                "countUnique(${key})");
+
+        final GroupingTable expected = new GroupingTable(keyExpressions, valueExpressions);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final ParallelAggregator aggregator = new ParallelAggregator(keyExpressions, valueExpressions, executor,
+                    100);
+            final Random random = new Random(1);
+            for (int i = 0; i < 100_000; i++) {
+                final Val[] row = new Val[]{ValLong.create(random.nextInt(1_000_000))};
+                expected.add(row);
+                aggregator.add(row);
+            }
+            final GroupingTable actual = aggregator.complete();
+
+            assertThat(actual.size()).isEqualTo(expected.size());
+            final Map<GroupKey, GeneratorSet> actualGroups = new HashMap<>();
+            for (int i = 0; i < actual.size(); i++) {
+                actualGroups.put(actual.getKey(i), actual.getGenerators(i));
+            }
+            for (int i = 0; i < expected.size(); i++) {
+                final GeneratorSet generators = actualGroups.get(expected.getKey(i));
+                for (int j = 0; j < valueExpressions.size(); j++) {
+                    assertThat(generators.get(j).eval()).isEqualTo(expected.getGenerators(i).get(j).eval());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelAggregatorOrder() throws ParseException, InterruptedException {
+        // Chunks are merged in the order they were added so aggregates that depend on the order of rows and the
+        // order of the groups are the same as grouping the rows with a single table.
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${key} % 50");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "joining(${value}, ',', 20)",
+                "topValues(${value}, ',', 3)", "nthValue(${value}, 2)");
+
+        final Random random = new Random(1);
+        final Val[][] rows = new Val[10_000][];
+        final GroupingTable expected = new GroupingTable(keyExpressions, valueExpressions);
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Val[]{ValLong.create(random.nextInt(1_000)), ValString.create("v" + random.nextInt(100))};
+            expected.add(rows[i]);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int run = 0; run < 5; run++) {
+                final ParallelAggregator aggregator = new ParallelAggregator(keyExpressions, valueExpressions,
+                        executor, 7, 8);
+                for (final Val[] row : rows) {
+                    aggregator.add(row);
+                }
+                final GroupingTable actual = aggregator.complete();
+
+                assertThat(actual.size()).isEqualTo(expected.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(actual.getKey(i)).isEqualTo(expected.getKey(i));
+                    for (int j = 0; j < valueExpressions.size(); j++) {
+                        assertThat(actual.getGenerators(i).get(j).eval())
+                                .as("Group %s, %s", i, valueExpressions.getExpression(j))
+                                .isEqualTo(expected.getGenerators(i).get(j).eval());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelAggregatorInFlight() throws ParseException, InterruptedException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${key} % 10");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()");
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        try {
+            // The producer waits for chunks to be grouped rather than filling the executor's queue.
+            final ParallelAggregator aggregator = new ParallelAggregator(keyExpressions, valueExpressions, executor,
+                    10, 2);
+            for (int i = 0; i < 10_000; i++) {
+                aggregator.add(new Val[]{ValLong.create(i)});
+                assertThat(executor.getQueue().size()).isLessThanOrEqualTo(2);
+            }
+            assertThat(aggregator.complete().getGenerators(0).get(0).eval().toLong()).isEqualTo(1000);
+
+            // A failed chunk is reported once every chunk has finished.
+            final ParallelAggregator failing = new ParallelAggregator(keyExpressions, valueExpressions, executor,
+                    10, 2);
+            failing.add(null);
+            assertThatThrownBy(failing::complete).isInstanceOf(NullPointerException.class);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelAggregatorNoRows() throws ParseException, InterruptedException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ParallelAggregator aggregator = new ParallelAggregator(
+                    new ExpressionSet(parser, fieldIndexMap, "${key}"),
+                    new ExpressionSet(parser, fieldIndexMap, "count()"),
+                    executor);
+            assertThat(aggregator.complete().size()).isZero();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSpilling() throws ParseException, IOException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${key} % 5000",
+                "concat('k', ${key} % 7)");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()", "sum(${key})",
+                "countUnique(${key})", "max(${key})");
+
+        final GroupingTable expected = new GroupingTable(keyExpressions, valueExpressions);
+        final Path directory = Files.createTempDirectory("test");
+        try (final SpillingGroupingTable table = new SpillingGroupingTable(keyExpressions, valueExpressions, 500,
+                directory, 3)) {
+            final Random random = new Random(1);
+            for (int i = 0; i < 100_000; i++) {
+                final Val[] row = new Val[]{ValLong.create(random.nextInt(1_000_000))};
+                expected.add(row);
+                table.add(row);
+                assertThat(table.getGroupsInMemory()).isLessThanOrEqualTo(500);
+            }
+            assertThat(table.getSpilledGroupCount()).isGreaterThan(0);
+            assertThat(countFiles(directory)).isEqualTo(8);
+
+            final Map<GroupKey, GeneratorSet> actualGroups = new HashMap<>();
+            table.forEachPartition(partition -> {
+                for (int i = 0; i < partition.size(); i++) {
+                    assertThat(actualGroups.put(partition.getKey(i), partition.getGenerators(i))).isNull();
+                }
+            });
+
+            assertThat(actualGroups).hasSize(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                final GeneratorSet generators = actualGroups.get(expected.getKey(i));
+                for (int j = 0; j < valueExpressions.size(); j++) {
+                    assertThat(generators.get(j).eval()).isEqualTo(expected.getGenerators(i).get(j).eval());
+                }
+            }
+        }
+        assertThat(countFiles(directory)).isZero();
+        Files.delete(directory);
+    }
+
+    @Test
+    void testEstimatedSize() throws ParseException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final GroupingTable table = new GroupingTable(
+                new ExpressionSet(parser, fieldIndexMap, "${key} % 100"),
+                new ExpressionSet(parser, fieldIndexMap, "count()", "countUnique(${key})"));
+
+        final long empty = table.estimatedSizeInBytes();
+        for (int i = 0; i < 100; i++) {
+            table.add(new Val[]{ValLong.create(i)});
+        }
+        final long groups = table.estimatedSizeInBytes();
+        assertThat(groups).isGreaterThan(empty + 100 * 100);
+
+        // Rows for existing groups only grow the groups whose generators keep values.
+        for (int i = 100; i < 10_100; i++) {
+            table.add(new Val[]{ValLong.create(i)});
+        }
+        assertThat(table.size()).isEqualTo(100);
+        assertThat(table.estimatedSizeInBytes()).isGreaterThan(groups + 10_000 * 40);
+    }
+
+    @Test
+    void testSpillingByteBudget() throws ParseException, IOException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${key} % 100");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "countUnique(${key})");
+
+        // There are only 100 groups but each one grows as it collects unique values.
+        final GroupingTable expected = new GroupingTable(keyExpressions, valueExpressions);
+        final Map<GroupKey, Val> actualGroups = new HashMap<>();
+        try (final SpillingGroupingTable table = new SpillingGroupingTable(keyExpressions, valueExpressions,
+                Integer.MAX_VALUE, 200_000, null, 2)) {
+            for (int i = 0; i < 50_000; i++) {
+                final Val[] row = new Val[]{ValLong.create(i)};
+                expected.add(row);
+                table.add(row);
+                assertThat(table.getBytesInMemory()).isLessThanOrEqualTo(200_000);
+            }
+            assertThat(expected.estimatedSizeInBytes()).isGreaterThan(1_000_000);
+            assertThat(table.getSpilledGroupCount()).isGreaterThan(0);
+
+            table.forEachPartition(partition -> {
+                for (int i = 0; i < partition.size(); i++) {
+                    actualGroups.put(partition.getKey(i), partition.getGenerators(i).get(0).eval());
+                }
+            });
+        }
+
+        assertThat(actualGroups).hasSize(100);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actualGroups.get(expected.getKey(i))).isEqualTo(ValInteger.create(500));
+        }
+    }
+
+    @Test
+    void testSpillingKeepsRowOrder() throws ParseException, IOException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${key} % 2");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "joining(${key}, ',', 3)");
+
+        // With one group in memory each new group writes all groups to a run so rows of a group are split
+        // between runs and memory.
+        final Map<String, String> actualGroups = new HashMap<>();
+        try (final SpillingGroupingTable table = new SpillingGroupingTable(keyExpressions, valueExpressions, 1,
+                null, 0)) {
+            for (final long key : new long[]{0, 2, 1, 4, 3, 6, 8}) {
+                table.add(new Val[]{ValLong.create(key)});
+            }
+            assertThat(table.getSpilledGroupCount()).isEqualTo(4);
+
+            table.forEachPartition(partition -> {
+                for (int i = 0; i < partition.size(); i++) {
+                    actualGroups.put(partition.getKey(i).get(0).toString(),
+                            partition.getGenerators(i).get(0).eval().toString());
+                }
+            });
+        }
+
+        assertThat(actualGroups).containsEntry("0", "0,2,4").containsEntry("1", "1,3");
+    }
+
+    @Test
+    void testAggregateKey() throws ParseException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final ExpressionSet keyExpressions = new ExpressionSet(parser, fieldIndexMap, "${user}", "count()");
+        final ExpressionSet valueExpressions = new ExpressionSet(parser, fieldIndexMap, "count()");
+        assertThatThrownBy(() -> new GroupingTable(keyExpressions, valueExpressions))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private long countFiles(final Path directory) throws IOException {
+        try (final Stream<Path> stream = Files.list(directory)) {
+            return stream.count();
+        }
+    }
+
+    private void add(final GroupingTable table,
+                     final FieldIndexMap fieldIndexMap,
+                     final String url,
+                     final String user,
+                     final long bytes) {
+        final Val[] values = new Val[fieldIndexMap.size()];
+        set(values, fieldIndexMap, "url", url == null ? ValNull.INSTANCE : ValString.create(url));
+        set(values, fieldIndexMap, "user", user == null ? ValNull.INSTANCE : ValString.create(user));
+        set(values, fieldIndexMap, "bytes", ValLong.create(bytes));
+        table.add(values);
+    }
+
+    private void set(final Val[] values, final FieldIndexMap fieldIndexMap, final String field, final Val val) {
+        final int index = fieldIndexMap.get(field);
+        if (index >= 0) {
+            values[index] = val;
+        }
+    }
+
+    private void assertGroup(final GroupingTable table,
+                             final int group,
+                             final String host,
+                             final String user,
+                             final long count,
+                             final long bytes) {
+        assertThat(table.getKey(group).get(0).toString()).isEqualTo(host);
+        assertThat(table.getKey(group).get(1).toString()).isEqualTo(user);
+        final GeneratorSet generators = table.getGenerators(group);
+        assertThat(generators.get(0).eval().toLong()).isEqualTo(count);
+        assertThat(generators.get(1).eval().toLong()).isEqualTo(bytes);
+        assertThat(generators.get(2).eval().toString()).isEqualTo(host);
+    }
+}
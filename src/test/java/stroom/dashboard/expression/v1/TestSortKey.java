@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression.v1;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestSortKey {
+    private static final ValComparator COMPARATOR = new ValComparator();
+
+    @Test
+    void testSameOrderAsValComparator() {
+        final Random random = new Random(1);
+        final List<Val> vals = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            vals.add(createVal(random));
+        }
+        vals.add(null);
+        vals.add(ValNull.INSTANCE);
+        vals.add(ValErr.create("error"));
+        vals.add(ValDouble.create(-0D));
+        vals.add(ValDouble.create(0D));
+        vals.add(ValDouble.create(Double.NaN));
+        vals.add(ValDouble.create(Double.NEGATIVE_INFINITY));
+
+        for (final Val v1 : vals) {
+            for (final Val v2 : vals) {
+                // ValComparator has no consistent order for numbers and non-numeric strings or for non-finite
+                // numbers and nulls.
+                if (isNull(v1) || isNull(v2)
+                        ? isNonFinite(v1) || isNonFinite(v2)
+                        : isNonNumericString(v1) != isNonNumericString(v2)) {
+                    continue;
+                }
+                assertThat(Integer.signum(SortKey.create(v1).compareTo(SortKey.create(v2))))
+                        .as(v1 + " compared to " + v2)
+                        .isEqualTo(Integer.signum(COMPARATOR.compare(v1, v2)));
+            }
+        }
+    }
+
+    @Test
+    void testLargeSortsMatchValComparator() {
+        final Random random = new Random(1);
+        final int count = 10_000;
+        final Val[] numbers = new Val[count];
+        final Val[] strings = new Val[count];
+        final Val[] wideStrings = new Val[count];
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    numbers[i] = ValInteger.create(random.nextInt(2001) - 1000);
+                    break;
+                case 1:
+                    numbers[i] = ValDouble.create(random.nextGaussian() * 1000);
+                    break;
+                case 2:
+                    numbers[i] = ValDouble.create(random.nextBoolean() ? -0D : Double.NaN);
+                    break;
+                default:
+                    numbers[i] = ValString.create(String.valueOf(random.nextInt(2001) - 1000));
+            }
+            strings[i] = ValString.create("Host" + random.nextInt(count) + (random.nextBoolean() ? "A" : "a"));
+            final char[] chars = new char[random.nextInt(8)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = "aA\u00e9\u0131\u4e2d".charAt(random.nextInt(5));
+            }
+            wideStrings[i] = ValString.create(new String(chars));
+        }
+
+        for (final Val[] vals : Arrays.asList(numbers, strings, wideStrings)) {
+            final SortKey[] keys = new SortKey[count];
+            final Integer[] expected = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = SortKey.create(vals[i]);
+                expected[i] = i;
+            }
+            Arrays.sort(expected, (i1, i2) -> COMPARATOR.compare(vals[i1], vals[i2]));
+            assertThat(SortKey.sortOrder(keys)).containsExactly(Arrays.stream(expected).mapToInt(i -> i).toArray());
+        }
+    }
+
+    @Test
+    void testNumbersBeforeStrings() {
+        assertThat(SortKey.create(ValInteger.create(100))).isLessThan(SortKey.create(ValString.create("!")));
+        assertThat(SortKey.create(ValString.create("2"))).isLessThan(SortKey.create(ValString.create("1a")));
+    }
+
+    @Test
+    void testExactLongs() {
+        final long big = 1L << 53;
+        assertThat(SortKey.create(ValLong.create(big))).isLessThan(SortKey.create(ValLong.create(big + 1)));
+        assertThat(SortKey.create(ValLong.create(big + 1))).isLessThan(SortKey.create(ValLong.create(big + 2)));
+    }
+
+    @Test
+    void testSortGenerators() throws ParseException {
+        final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final Expression expression = parser.parse(fieldIndexMap, "${val}");
+
+        final Generator[] numbers = createGenerators(expression, "10", "9", null, "2020-01-01T00:00:00.000Z", "-1.5");
+        final Generator[] expected = numbers.clone();
+        Arrays.sort(expected);
+        final Generator[] actual = numbers.clone();
+        SortKey.sort(actual);
+        assertThat(actual).containsExactly(expected);
+        assertThat(Arrays.stream(actual).map(g -> g.eval().toString()))
+                .containsExactly("-1.5", "9", "10", "2020-01-01T00:00:00.000Z", null);
+
+        // Equal values keep their order.
+        final List<Generator> strings = Arrays.asList(createGenerators(expression, "b", "A", "c", "a", "10"));
+        SortKey.sort(strings);
+        assertThat(strings.stream().map(g -> g.eval().toString()))
+                .containsExactly("10", "A", "a", "b", "c");
+    }
+
+    private static Generator[] createGenerators(final Expression expression, final String... values) {
+        final Generator[] generators = new Generator[values.length];
+        for (int i = 0; i < values.length; i++) {
+            generators[i] = expression.createGenerator();
+            generators[i].set(new Val[]{values[i] == null ? ValNull.INSTANCE : ValString.create(values[i])});
+        }
+        return generators;
+    }
+
+    private static Val createVal(final Random random) {
+        switch (random.nextInt(9)) {
+            case 0:
+                return ValInteger.create(random.nextInt(21) - 10);
+            case 1:
+                return ValLong.create(random.nextInt(21) - 10);
+            case 2:
+                return ValDouble.create((random.nextInt(41) - 20) / 2D);
+            case 3:
+                return ValBoolean.create(random.nextBoolean());
+            case 4:
+                return ValString.create(String.valueOf((random.nextInt(41) - 20) / 2D));
+            case 5:
+                return ValString.create(DateUtil.createNormalDateTimeString(random.nextInt(1000) * 1000L));
+            default:
+                final char[] chars = new char[random.nextInt(4)];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = "aAbBzZ_ \u00e9\u00c9\u0131I\u00df".charAt(random.nextInt(13));
+                }
+                return ValString.create(new String(chars));
+        }
+    }
+
+    private static boolean isNonNumericString(final Val val) {
+        return val instanceof ValString && val.toString() != null && val.toDouble() == null;
+    }
+
+    private static boolean isNonFinite(final Val val) {
+        return val instanceof ValDouble && !Double.isFinite(((ValDouble) val).doubleValue());
+    }
+
+    private static boolean isNull(final Val val) {
+        return val == null || !val.type().isValue();
+    }
+}